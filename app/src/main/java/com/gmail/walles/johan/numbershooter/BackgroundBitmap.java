@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.util.DisplayMetrics;
+import android.view.View;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * The starry background of our screens, decoded at about the size it is shown in.
+ *
+ * <p>The background image is large enough for the biggest screens. Decoding it at full resolution
+ * on every screen costs both time and lots of memory, so we decode it once at the size we need and
+ * share it between all screens.
+ *
+ * <p>Decoding can be started in the background using {@link #preload(Resources)}.
+ */
+public final class BackgroundBitmap {
+    @Nullable private static Bitmap bitmap;
+    private static int bitmapSampleSize;
+
+    private BackgroundBitmap() {
+        // Prevent us from being instantiated
+    }
+
+    /** Give a view our background, decoded to match the view's size once it has been laid out. */
+    @MainThread
+    public static void applyTo(View view) {
+        view.addOnLayoutChangeListener(
+                (v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+                    int width = right - left;
+                    int height = bottom - top;
+                    if (width <= 0 || height <= 0) {
+                        return;
+                    }
+
+                    boolean sizeChanged =
+                            width != oldRight - oldLeft || height != oldBottom - oldTop;
+                    if (!sizeChanged && v.getBackground() != null) {
+                        return;
+                    }
+
+                    Resources resources = v.getResources();
+                    v.setBackground(new BitmapDrawable(resources, get(resources, width, height)));
+                });
+    }
+
+    /**
+     * Decode the background at screen size, so that a full screen view will get it without
+     * decoding.
+     */
+    @WorkerThread
+    public static void preload(Resources resources) {
+        DisplayMetrics displayMetrics = resources.getDisplayMetrics();
+        get(resources, displayMetrics.widthPixels, displayMetrics.heightPixels);
+    }
+
+    private static synchronized Bitmap get(Resources resources, int widthPixels, int heightPixels) {
+        int sampleSize =
+                SampledBitmaps.getSampleSize(
+                        resources, R.drawable.background, widthPixels, heightPixels);
+        if (bitmap == null || bitmapSampleSize != sampleSize) {
+            bitmap = SampledBitmaps.decodeResource(resources, R.drawable.background, sampleSize);
+            bitmapSampleSize = sampleSize;
+        }
+
+        return bitmap;
+    }
+}
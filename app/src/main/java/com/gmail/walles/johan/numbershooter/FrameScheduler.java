@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import androidx.annotation.MainThread;
+
+/**
+ * Decides when {@link GameView} should draw another frame.
+ *
+ * <p>While {@link State#RUNNING} every frame requests the next one. When nothing moves any more we
+ * go {@link State#IDLE} and stop requesting frames until something wakes us up. While {@link
+ * State#STOPPED} the game isn't visible and nothing can wake us up until we're started again.
+ */
+@MainThread
+class FrameScheduler {
+    enum State {
+        RUNNING,
+        IDLE,
+        STOPPED
+    }
+
+    private State state = State.STOPPED;
+
+    State getState() {
+        return state;
+    }
+
+    /**
+     * The game became visible.
+     *
+     * @return true if a frame should be requested now
+     */
+    boolean start() {
+        if (state != State.STOPPED) {
+            return false;
+        }
+
+        state = State.RUNNING;
+        return true;
+    }
+
+    /** The game is no longer visible. */
+    void stop() {
+        state = State.STOPPED;
+    }
+
+    /**
+     * Something may have started moving, like after input or when starting a new level.
+     *
+     * @return true if a frame should be requested now
+     */
+    boolean wake() {
+        if (state != State.IDLE) {
+            return false;
+        }
+
+        state = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * @param animating true if anything will move in the next frame
+     * @return true if the next frame should be requested
+     */
+    boolean onFrameDrawn(boolean animating) {
+        if (state != State.RUNNING) {
+            // Frames drawn for other reasons, like layout changes, don't start the loop
+            return false;
+        }
+
+        if (!animating) {
+            state = State.IDLE;
+            return false;
+        }
+
+        return true;
+    }
+}
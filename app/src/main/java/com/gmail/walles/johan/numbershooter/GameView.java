@@ -20,7 +20,9 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Point;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.Display;
 import android.view.View;
 import android.view.WindowManager;
@@ -29,6 +31,10 @@ import androidx.annotation.Nullable;
 import com.gmail.walles.johan.numbershooter.model.FallingMaths;
 import com.gmail.walles.johan.numbershooter.model.FallingMathsFactory;
 import com.gmail.walles.johan.numbershooter.model.Model;
+import com.gmail.walles.johan.numbershooter.playerstate.SessionHistory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import org.jetbrains.annotations.NonNls;
 import timber.log.Timber;
@@ -40,6 +46,12 @@ public class GameView extends View {
     private static class MovingAverage {
         private static final double INERTIA = 100;
 
+        /**
+         * Reported if nothing was added since the last report. The first frame after being idle
+         * doesn't add anything to the frame rate, and may still come with a report.
+         */
+        @NonNls private static final String NO_SAMPLES = "none";
+
         private double average;
         @Nullable private Double max;
         @Nullable private Double min;
@@ -62,8 +74,9 @@ public class GameView extends View {
         }
 
         protected String get() {
-            assert max != null;
-            assert min != null;
+            if (max == null || min == null) {
+                return NO_SAMPLES;
+            }
 
             @NonNls String formatString = "%.1fms-%.1fms-%.1fms";
             String stats = String.format(Locale.ENGLISH, formatString, min, average, max);
@@ -73,8 +86,10 @@ public class GameView extends View {
         }
 
         protected String getHz() {
-            assert max != null;
-            assert min != null;
+            if (max == null || min == null) {
+                return NO_SAMPLES;
+            }
+
             @NonNls String formatString = "%.1fHz-%.1fHz-%.1fHz";
             String stats =
                     String.format(
@@ -107,7 +122,18 @@ public class GameView extends View {
     private MovingAverage invalidateMillisRunningAverage;
     private long lastStatsReportTimestamp;
 
-    private final ObjectiveSoundPool soundPool;
+    /** From key press to the frame showing the resulting shot, for this whole session. */
+    private final LatencyHistogram inputLatency = new LatencyHistogram();
+
+    /** Input timestamps of shots drawn in the latest frame, waiting for that frame to show. */
+    private final List<Long> drawnInputTimesMs = new ArrayList<>();
+
+    private final Choreographer.FrameCallback recordInputLatencies = this::recordInputLatencies;
+
+    private final LevelPrefetcher levelPrefetcher = new LevelPrefetcher();
+
+    private final FrameScheduler frameScheduler = new FrameScheduler();
+
     private final ObjectiveSoundPool.SoundEffect shotSound;
     private final ObjectiveSoundPool.SoundEffect explosionSound;
     private final ObjectiveSoundPool.SoundEffect mathsKilled;
@@ -129,20 +155,41 @@ public class GameView extends View {
     public GameView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
 
-        soundPool = new ObjectiveSoundPool();
-        shotSound = soundPool.load(context, R.raw.one_fire_cracker_goes_off, "Cannon shot");
-        explosionSound = soundPool.load(context, R.raw.cannon_explosion, "Cannon explosion");
-        mathsKilled = soundPool.load(context, R.raw.maths_killed, "Maths killed");
-        mathsArriving = soundPool.load(context, R.raw.maths_arriving, "Maths arriving");
-        wrongAnswer = soundPool.load(context, R.raw.wrong_answer, "Wrong answer");
-        levelCleared = soundPool.load(context, R.raw.level_cleared, "Level cleared");
+        ObjectiveSoundPool soundPool = NumbervadersApp.getSoundPool(context);
+
+        // Game over and level cleared must always be heard, new challenges arriving are the least
+        // important
+        explosionSound = soundPool.get(R.raw.cannon_explosion).setPriority(3);
+        levelCleared = soundPool.get(R.raw.level_cleared).setPriority(3);
+        wrongAnswer = soundPool.get(R.raw.wrong_answer).setPriority(2);
+        mathsKilled =
+                soundPool
+                        .get(R.raw.maths_killed)
+                        .setPriority(2)
+                        .setMinRetriggerMs(SoundMixer.RAPID_FIRE_MIN_RETRIGGER_MS);
+        shotSound =
+                soundPool
+                        .get(R.raw.one_fire_cracker_goes_off)
+                        .setPriority(1)
+                        .setMinRetriggerMs(SoundMixer.RAPID_FIRE_MIN_RETRIGGER_MS);
+        mathsArriving = soundPool.get(R.raw.maths_arriving);
     }
 
     public void close() {
-        soundPool.close();
+        stopFrames();
+        levelPrefetcher.close();
+        Choreographer.getInstance().removeFrameCallback(recordInputLatencies);
+        Timber.i("Input to screen latency this session: %s", inputLatency.getSummary());
+
+        shotSound.release();
+        explosionSound.release();
+        mathsKilled.release();
+        mathsArriving.release();
+        wrongAnswer.release();
+        levelCleared.release();
     }
 
-    public void restart(GameType gameType, int level) {
+    private float getObjectSizesInPixels() {
         WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
         assert wm != null;
 
@@ -151,15 +198,49 @@ public class GameView extends View {
         display.getSize(size);
         int screenHeight = Math.max(size.x, size.y);
 
-        float objectSizesInPixels = screenHeight / 15f;
-        model =
-                new Model(
-                        new FallingMathsFactory(gameType, level, objectSizesInPixels, mathsKilled),
-                        objectSizesInPixels,
-                        shotSound,
-                        explosionSound,
-                        mathsArriving,
-                        wrongAnswer);
+        return screenHeight / 15f;
+    }
+
+    /**
+     * Start setting up a level in the background, so that a later {@link #restart} into it is
+     * quick.
+     */
+    public void prefetch(GameType gameType, int level) {
+        levelPrefetcher.prefetch(gameType, level, getObjectSizesInPixels(), mathsKilled);
+    }
+
+    /**
+     * @param snapshot From {@link #saveSnapshot()}, or null to start the level from the beginning.
+     *     If restoring the snapshot fails, the level is started from the beginning.
+     */
+    public void restart(GameType gameType, int level, @Nullable byte[] snapshot) {
+        float objectSizesInPixels = getObjectSizesInPixels();
+
+        model = null;
+        if (snapshot != null) {
+            Model restored =
+                    createModel(
+                            gameType,
+                            FallingMathsFactory.createPrepared(
+                                    gameType, level, objectSizesInPixels, mathsKilled),
+                            objectSizesInPixels);
+            try {
+                restored.restoreSnapshot(snapshot);
+                model = restored;
+            } catch (IOException e) {
+                Timber.w(e, "Restoring %s level %d failed, starting over", gameType, level);
+            }
+        }
+
+        if (model == null) {
+            FallingMathsFactory fallingMathsFactory = levelPrefetcher.take(gameType, level);
+            if (fallingMathsFactory == null) {
+                fallingMathsFactory =
+                        FallingMathsFactory.createPrepared(
+                                gameType, level, objectSizesInPixels, mathsKilled);
+            }
+            model = createModel(gameType, fallingMathsFactory, objectSizesInPixels);
+        }
 
         lastFrameStart = 0;
 
@@ -168,13 +249,129 @@ public class GameView extends View {
         drawMillisRunningAverage = new MovingAverage();
         invalidateMillisRunningAverage = new MovingAverage();
         lastStatsReportTimestamp = 0;
+
+        if (frameScheduler.wake()) {
+            requestFrame();
+        }
+        updateFrameWatching();
+    }
+
+    /** Start drawing frames, call when the game becomes visible. */
+    public void startFrames() {
+        if (frameScheduler.start()) {
+            requestFrame();
+        }
+        updateFrameWatching();
+    }
+
+    /** Stop drawing frames, call when the game is no longer visible. */
+    public void stopFrames() {
+        frameScheduler.stop();
+        updateFrameWatching();
+    }
+
+    /** Have the watchdog look for slow frames only while we draw one frame after the other. */
+    private void updateFrameWatching() {
+        Watchdog watchdog = NumbervadersApp.getWatchdog(getContext());
+        if (watchdog == null) {
+            return;
+        }
+
+        if (frameScheduler.getState() == FrameScheduler.State.RUNNING) {
+            watchdog.startWatchingFrames();
+        } else {
+            watchdog.stopWatchingFrames();
+        }
+    }
+
+    /** Start the frame loop after it has been idle or stopped. */
+    private void requestFrame() {
+        // Time spent not drawing isn't a slow frame
+        lastFrameStart = 0;
+
+        invalidate();
+    }
+
+    private Model createModel(
+            GameType gameType, FallingMathsFactory fallingMathsFactory, float objectSizesInPixels) {
+        Model created =
+                new Model(
+                        fallingMathsFactory,
+                        objectSizesInPixels,
+                        shotSound,
+                        explosionSound,
+                        mathsArriving,
+                        wrongAnswer);
+        created.setChallengeListener(createHistoryRecorder(gameType));
+        created.setInputLatencyListener(this::onShotDrawn);
+        return created;
+    }
+
+    /**
+     * Save the level in progress so that it can be resumed using {@link #restart(GameType, int,
+     * byte[])}.
+     *
+     * @return null if there is no level in progress
+     */
+    @Nullable
+    public byte[] saveSnapshot() {
+        if (model == null || model.getCannon().isDead() || model.isDone()) {
+            // Game over has already been reported, a restored level wouldn't report it again
+            return null;
+        }
+
+        return model.toSnapshot();
+    }
+
+    private Model.ChallengeListener createHistoryRecorder(GameType gameType) {
+        SessionHistory history = NumbervadersApp.getSessionHistory(getContext());
+        return new Model.ChallengeListener() {
+            @Override
+            public void onChallengeHit(FallingMaths challenge) {
+                record(challenge, SessionHistory.Outcome.HIT);
+            }
+
+            @Override
+            public void onWrongAnswer(FallingMaths lowest) {
+                record(lowest, SessionHistory.Outcome.MISS);
+            }
+
+            @Override
+            public void onChallengeLanded(FallingMaths challenge) {
+                record(challenge, SessionHistory.Outcome.LANDED);
+            }
+
+            private void record(FallingMaths challenge, SessionHistory.Outcome outcome) {
+                history.record(gameType, challenge.a, challenge.b, outcome, challenge.getAgeMs());
+            }
+        };
+    }
+
+    /** Called from inside {@link Model#drawOn(Canvas)}. */
+    private void onShotDrawn(long inputTimeMs) {
+        if (drawnInputTimesMs.isEmpty()) {
+            // The frame we're drawing now goes on screen when the next one starts
+            Choreographer.getInstance().postFrameCallback(recordInputLatencies);
+        }
+        drawnInputTimesMs.add(inputTimeMs);
+    }
+
+    private void recordInputLatencies(long frameTimeNanos) {
+        // Frame times and input event times are both based on the monotonic clock
+        long presentedAtMs = frameTimeNanos / 1_000_000;
+        for (long inputTimeMs : drawnInputTimesMs) {
+            inputLatency.add(presentedAtMs - inputTimeMs);
+        }
+        drawnInputTimesMs.clear();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         if (model == null) {
             // Not set up yet, try again
-            invalidate();
+            if (frameScheduler.onFrameDrawn(true)) {
+                invalidate();
+            }
             return;
         }
 
@@ -191,7 +388,8 @@ public class GameView extends View {
 
         boolean cannonDeadBefore = model.getCannon().isDead();
         boolean modelDoneBefore = model.isDone();
-        model.updateTo(System.currentTimeMillis());
+        // Same time base as input event timestamps
+        model.updateTo(SystemClock.uptimeMillis());
 
         boolean cannonDeadAfter = model.getCannon().isDead();
         boolean modelDoneAfter = model.isDone();
@@ -208,8 +406,12 @@ public class GameView extends View {
         model.drawOn(canvas);
 
         long t2 = System.currentTimeMillis();
-        // Trigger the next frame
-        invalidate();
+        // Trigger the next frame, unless nothing is moving
+        if (frameScheduler.onFrameDrawn(model.isAnimating())) {
+            invalidate();
+        } else {
+            updateFrameWatching();
+        }
 
         long t3 = System.currentTimeMillis();
         long updateMillis = t1 - t0;
@@ -225,20 +427,27 @@ public class GameView extends View {
         } else if (now - lastStatsReportTimestamp > LOG_REPORT_EVERY_MS) {
             lastStatsReportTimestamp = now;
             Timber.i(
-                    "onDraw timings: update=<%s>, draw=<%s>, invalidate=<%s>, framerate=<%s>",
+                    "onDraw timings: update=<%s>, draw=<%s>, invalidate=<%s>, framerate=<%s>,"
+                            + " input latency=<%s>",
                     updateMillisRunningAverage.get(),
                     drawMillisRunningAverage.get(),
                     invalidateMillisRunningAverage.get(),
-                    betweenFramesMillisRunningAverage.getHz());
+                    betweenFramesMillisRunningAverage.getHz(),
+                    inputLatency.getSummary());
         }
     }
 
-    public void insertDigit(int digit) {
+    /** @param eventTimeMs When the digit was input, see {@link KeyboardView.KeypressListener} */
+    public void insertDigit(int digit, long eventTimeMs) {
         if (model == null) {
             return;
         }
 
-        model.insertDigit(digit);
+        model.insertDigit(digit, eventTimeMs);
+        if (frameScheduler.wake()) {
+            requestFrame();
+            updateFrameWatching();
+        }
     }
 
     public void setOnGameOverListener(@NonNull OnGameOverListener onGameOverListener) {
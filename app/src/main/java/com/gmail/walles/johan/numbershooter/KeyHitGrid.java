@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+/**
+ * Finds the key closest to a touch point with a single array lookup.
+ *
+ * <p>The area is divided into square cells, and the closest key to each cell's center is worked out
+ * once up front. Touches then just need to find their cell.
+ */
+class KeyHitGrid {
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+
+    /** Row major, one key index per cell. */
+    private final byte[] cells;
+
+    /**
+     * @param xCenters Key centers, X coordinates
+     * @param yCenters Key centers, Y coordinates, same length as xCenters
+     */
+    KeyHitGrid(int width, int height, float cellSize, float[] xCenters, float[] yCenters) {
+        if (xCenters.length == 0 || xCenters.length != yCenters.length) {
+            throw new IllegalArgumentException(
+                    "Bad key centers: " + xCenters.length + "/" + yCenters.length);
+        }
+        if (xCenters.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many keys: " + xCenters.length);
+        }
+
+        this.cellSize = cellSize;
+        columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        cells = new byte[columns * rows];
+
+        for (int row = 0; row < rows; row++) {
+            float y = (row + 0.5f) * cellSize;
+            for (int column = 0; column < columns; column++) {
+                float x = (column + 0.5f) * cellSize;
+
+                int closest = 0;
+                float closestDistance = Float.MAX_VALUE;
+                for (int key = 0; key < xCenters.length; key++) {
+                    float dx = x - xCenters[key];
+                    float dy = y - yCenters[key];
+                    float distance = dx * dx + dy * dy;
+                    if (distance < closestDistance) {
+                        closest = key;
+                        closestDistance = distance;
+                    }
+                }
+                cells[row * columns + column] = (byte) closest;
+            }
+        }
+    }
+
+    /** @return The index of the key closest to this point */
+    int keyAt(float x, float y) {
+        int column = clamp((int) (x / cellSize), columns);
+        int row = clamp((int) (y / cellSize), rows);
+        return cells[row * columns + column];
+    }
+
+    private static int clamp(int value, int count) {
+        if (value < 0) {
+            return 0;
+        }
+        if (value >= count) {
+            return count - 1;
+        }
+        return value;
+    }
+}
@@ -18,6 +18,8 @@ package com.gmail.walles.johan.numbershooter;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -39,15 +41,29 @@ public class KeyboardView extends View {
     /** We never give the keyboard more height than this. */
     private static final double MAX_HEIGHT_PERCENT = 30;
 
+    /** Hit testing resolution, higher is more exact. */
+    private static final int HIT_GRID_CELLS_PER_KEY = 8;
+
     private final Paint paint;
     private KeypressListener keypressListener;
-    private final ObjectiveSoundPool soundPool;
     private final ObjectiveSoundPool.SoundEffect keyUp;
     private final ObjectiveSoundPool.SoundEffect keyDown;
     private int backgroundColor;
 
+    /**
+     * True to emit digits when keys are pressed, false to wait for them to be released.
+     *
+     * <p>Emitting digits on touch down makes shots go off sooner, since the time the finger rests
+     * on the key isn't added to every shot.
+     */
+    private final boolean dispatchOnTouchDown;
+
     public interface KeypressListener {
-        void handleDigit(int digit);
+        /**
+         * @param eventTimeMs When the key was pressed, in the {@link
+         *     android.os.SystemClock#uptimeMillis()} time base
+         */
+        void handleDigit(int digit, long eventTimeMs);
     }
 
     private class Key {
@@ -68,12 +84,6 @@ public class KeyboardView extends View {
             yCenter = yBase - textBounds.height() / 2f;
         }
 
-        private float distanceSquaredTo(float x, float y) {
-            float dx = x - xCenter;
-            float dy = y - yCenter;
-            return dx * dx + dy * dy;
-        }
-
         private void drawOn(Canvas canvas, Paint paint) {
             canvas.drawText(Integer.toString(digit), xCenter, yBase, paint);
 
@@ -85,6 +95,15 @@ public class KeyboardView extends View {
 
     private List<Key> keys;
 
+    /** Maps touch coordinates to {@link #keys} indices, rebuilt with the keys. */
+    private KeyHitGrid keyHitGrid;
+
+    /**
+     * Our looks never change, so we render them once into this and just copy it to the screen.
+     * Dropped when the keys are reconfigured.
+     */
+    @Nullable private Bitmap rendered;
+
     /** The actual initialization is done in {@link #KeyboardView(Context, AttributeSet, int)}. */
     public KeyboardView(Context context) {
         this(context, null);
@@ -100,9 +119,28 @@ public class KeyboardView extends View {
     public KeyboardView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
 
-        soundPool = new ObjectiveSoundPool();
-        keyDown = soundPool.load(context, R.raw.keydown, "Key down").setVolume(0.3);
-        keyUp = soundPool.load(context, R.raw.keyup, "Key up").setVolume(0.6);
+        TypedArray attributes =
+                context.obtainStyledAttributes(attrs, R.styleable.KeyboardView, defStyleAttr, 0);
+        try {
+            dispatchOnTouchDown =
+                    attributes.getBoolean(R.styleable.KeyboardView_dispatchOnTouchDown, false);
+        } finally {
+            attributes.recycle();
+        }
+
+        ObjectiveSoundPool soundPool = NumbervadersApp.getSoundPool(context);
+        keyDown =
+                soundPool
+                        .get(R.raw.keydown)
+                        .setVolume(0.3)
+                        .setPriority(1)
+                        .setMinRetriggerMs(SoundMixer.RAPID_FIRE_MIN_RETRIGGER_MS);
+        keyUp =
+                soundPool
+                        .get(R.raw.keyup)
+                        .setVolume(0.6)
+                        .setPriority(1)
+                        .setMinRetriggerMs(SoundMixer.RAPID_FIRE_MIN_RETRIGGER_MS);
 
         setOnTouchListener((v, event) -> handleTouch(event));
 
@@ -117,53 +155,51 @@ public class KeyboardView extends View {
     }
 
     public void close() {
-        soundPool.close();
+        keyDown.release();
+        keyUp.release();
     }
 
-    /** @see android.view.View.OnTouchListener#onTouch(View, MotionEvent) */
+    /**
+     * Every pointer is handled on its own at its action index, so a key pressed while another one
+     * is still held down (rollover) is never lost.
+     *
+     * @see android.view.View.OnTouchListener#onTouch(View, MotionEvent)
+     */
     private boolean handleTouch(MotionEvent event) {
-        float x;
-        float y;
-
+        int index = event.getActionIndex();
         switch (event.getActionMasked()) {
             case MotionEvent.ACTION_DOWN:
             case MotionEvent.ACTION_POINTER_DOWN:
                 keyDown.play();
+                if (dispatchOnTouchDown) {
+                    dispatchDigitAt(event.getX(index), event.getY(index), event.getEventTime());
+                }
+
                 // Required to get the up events:
                 // https://stackoverflow.com/a/16495363/473672
                 return true;
 
-            case MotionEvent.ACTION_POINTER_UP:
-                keyUp.play();
-                x = event.getX(event.getActionIndex());
-                y = event.getY(event.getActionIndex());
-                break;
-
             case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_POINTER_UP:
                 keyUp.play();
-                x = event.getX();
-                y = event.getY();
-                break;
+                if (!dispatchOnTouchDown) {
+                    dispatchDigitAt(event.getX(index), event.getY(index), event.getEventTime());
+                }
+                return true;
 
             default:
-                // We only handle up events
+                // We only handle down and up events
                 return false;
         }
+    }
 
-        Key closestKey = keys.get(0);
-        float closestDistance = closestKey.distanceSquaredTo(x, y);
-        for (Key key : keys) {
-            float distance = key.distanceSquaredTo(x, y);
-            if (distance < closestDistance) {
-                closestKey = key;
-                closestDistance = distance;
-            }
+    private void dispatchDigitAt(float x, float y, long eventTimeMs) {
+        if (keypressListener == null) {
+            return;
         }
 
-        if (keypressListener != null) {
-            keypressListener.handleDigit(closestKey.digit);
-        }
-        return true;
+        Key key = keys.get(keyHitGrid.keyAt(x, y));
+        keypressListener.handleDigit(key.digit, eventTimeMs);
     }
 
     @Override
@@ -175,7 +211,7 @@ public class KeyboardView extends View {
             return super.onKeyUp(keyCode, event);
         }
 
-        keypressListener.handleDigit(keyCode - KeyEvent.KEYCODE_0);
+        keypressListener.handleDigit(keyCode - KeyEvent.KEYCODE_0, event.getEventTime());
         return true;
     }
 
@@ -230,15 +266,58 @@ public class KeyboardView extends View {
         newKeys.add(new Key(8, x1, y0));
         newKeys.add(new Key(9, x2, y0));
 
+        // Finding the closest key for each cell up front makes hit testing a lookup
+        float[] xCenters = new float[newKeys.size()];
+        float[] yCenters = new float[newKeys.size()];
+        for (int i = 0; i < newKeys.size(); i++) {
+            xCenters[i] = newKeys.get(i).xCenter;
+            yCenters[i] = newKeys.get(i).yCenter;
+        }
+        float cellSize = Math.max(1f, Math.min(keyWidth, rowHeight) / HIT_GRID_CELLS_PER_KEY);
+        keyHitGrid = new KeyHitGrid(width, height, cellSize, xCenters, yCenters);
+
         keys = newKeys;
+
+        // Render again with the new layout
+        dropRendered();
+    }
+
+    private void dropRendered() {
+        if (rendered != null) {
+            rendered.recycle();
+            rendered = null;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        dropRendered();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        if (rendered == null
+                || rendered.getWidth() != getWidth()
+                || rendered.getHeight() != getHeight()) {
+            dropRendered();
+            rendered = render(getWidth(), getHeight());
+        }
+
+        canvas.drawBitmap(rendered, 0, 0, null);
+    }
+
+    private Bitmap render(int width, int height) {
+        Bitmap bitmap =
+                Bitmap.createBitmap(
+                        Math.max(1, width), Math.max(1, height), Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
         canvas.drawColor(backgroundColor);
 
         for (Key key : keys) {
             key.drawOn(canvas, paint);
         }
+
+        return bitmap;
     }
 }
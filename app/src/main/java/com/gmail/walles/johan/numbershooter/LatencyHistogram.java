@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import java.util.Locale;
+import org.jetbrains.annotations.NonNls;
+
+/**
+ * Counts latencies in fixed width buckets, for cheap percentiles.
+ *
+ * <p>Latencies beyond the last bucket are counted in the last bucket, but {@link #getMaxMs()} is
+ * still exact.
+ */
+public class LatencyHistogram {
+    private static final int BUCKET_WIDTH_MS = 2;
+    private static final int BUCKET_COUNT = 250;
+
+    private final int[] buckets = new int[BUCKET_COUNT];
+    private int count;
+    private long totalMs;
+    private long maxMs;
+
+    public void add(long latencyMs) {
+        if (latencyMs < 0) {
+            // Clock trouble, nothing to learn from this
+            return;
+        }
+
+        int bucket = (int) Math.min(latencyMs / BUCKET_WIDTH_MS, BUCKET_COUNT - 1);
+        buckets[bucket]++;
+        count++;
+        totalMs += latencyMs;
+        maxMs = Math.max(maxMs, latencyMs);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getMaxMs() {
+        return maxMs;
+    }
+
+    public long getAverageMs() {
+        if (count == 0) {
+            return 0;
+        }
+        return totalMs / count;
+    }
+
+    /**
+     * @param percent 0-100
+     * @return The upper bound of the bucket holding this percentile, 0 if we have no data
+     */
+    public long getPercentileMs(double percent) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long wanted = (long) Math.ceil(count * percent / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= wanted && seen > 0 && bucket < BUCKET_COUNT - 1) {
+                return Math.min((bucket + 1L) * BUCKET_WIDTH_MS, maxMs);
+            }
+        }
+
+        return maxMs;
+    }
+
+    /** A one-line summary for logging. */
+    public String getSummary() {
+        @NonNls String format = "n=%d, avg=%dms, p50=%dms, p90=%dms, p99=%dms, max=%dms";
+        return String.format(
+                Locale.ENGLISH,
+                format,
+                count,
+                getAverageMs(),
+                getPercentileMs(50),
+                getPercentileMs(90),
+                getPercentileMs(99),
+                maxMs);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import com.gmail.walles.johan.numbershooter.model.FallingMathsFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * Sets up the next level in the background while the player is looking at the level cleared screen,
+ * so that starting it doesn't cause a hitch.
+ */
+class LevelPrefetcher {
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(
+                    runnable -> {
+                        @NonNls String name = "LevelPrefetcher";
+                        return new Thread(runnable, name);
+                    });
+
+    @Nullable private Future<FallingMathsFactory> next;
+
+    /** Start preparing a level, replacing any level prepared earlier. */
+    @MainThread
+    void prefetch(
+            GameType gameType,
+            int level,
+            float objectSizePixels,
+            ObjectiveSoundPool.SoundEffect mathsKilled) {
+        if (next != null) {
+            next.cancel(true);
+        }
+
+        next =
+                executor.submit(
+                        () -> {
+                            FallingMathsFactory factory =
+                                    FallingMathsFactory.createPrepared(
+                                            gameType, level, objectSizePixels, mathsKilled);
+                            factory.warmTextLayout();
+                            return factory;
+                        });
+    }
+
+    /**
+     * Get the prepared level if it is the one asked for. Waits for preparations to finish if
+     * needed, which is still faster than starting over.
+     *
+     * @return null if no matching level has been prepared
+     */
+    @MainThread
+    @Nullable
+    FallingMathsFactory take(GameType gameType, int level) {
+        Future<FallingMathsFactory> taken = next;
+        next = null;
+        if (taken == null) {
+            return null;
+        }
+
+        FallingMathsFactory factory;
+        try {
+            factory = taken.get();
+        } catch (ExecutionException e) {
+            Timber.w(e, "Preparing level %d failed", level);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        if (factory.getGameType() != gameType || factory.getLevel() != level) {
+            Timber.w("Prefetched the wrong level, wanted %s %d", gameType, level);
+            return null;
+        }
+
+        return factory;
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+}
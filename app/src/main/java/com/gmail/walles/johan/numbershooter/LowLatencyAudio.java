@@ -0,0 +1,320 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
+import androidx.annotation.Nullable;
+import java.util.concurrent.locks.LockSupport;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * Plays PCM sound effects through a low latency {@link AudioTrack}.
+ *
+ * <p>{@link android.media.SoundPool} adds tens of milliseconds between asking for a sound and
+ * hearing it. Here we instead keep a stream open at the device's native sample rate and buffer
+ * size, and mix into it ourselves. The buffer is kept short, so a new sound is heard at most a
+ * couple of buffers after it was asked for.
+ *
+ * <p>Keeping the stream open costs battery, so it is only open between {@link #start()} and {@link
+ * #stop()}. And after {@link #IDLE_PAUSE_MS} of silence we pause it until the next sound.
+ */
+@TargetApi(Build.VERSION_CODES.O)
+class LowLatencyAudio {
+    /** Fallback if the device doesn't tell us its native buffer size. */
+    private static final int DEFAULT_FRAMES_PER_BUFFER = 256;
+
+    /** How many native buffers to queue, fewer means lower latency but more risk of glitches. */
+    private static final int BUFFERS = 2;
+
+    /**
+     * Pause the stream after this much silence. Sounds often come in bursts, and keeping the stream
+     * running between them keeps it quick to respond.
+     */
+    private static final long IDLE_PAUSE_MS = 2000;
+
+    private static class Command {
+        private final int voiceIndex;
+        @Nullable private final short[] pcm;
+        private final float volume;
+
+        private Command(int voiceIndex, @Nullable short[] pcm, float volume) {
+            this.voiceIndex = voiceIndex;
+            this.pcm = pcm;
+            this.volume = volume;
+        }
+    }
+
+    private final int sampleRate;
+    private final int framesPerBuffer;
+
+    /** Only touched by {@link #writer}. */
+    private final PcmMixer mixer;
+
+    /** Consumed by {@link #writer}. */
+    private final SpscRingBuffer<Command> commands = new SpscRingBuffer<>(64);
+
+    /** Written by the main thread, read by whoever calls {@link #play}. */
+    @Nullable private volatile Thread writer;
+
+    private LowLatencyAudio(int sampleRate, int framesPerBuffer, int voices) {
+        this.sampleRate = sampleRate;
+        this.framesPerBuffer = framesPerBuffer;
+        this.mixer = new PcmMixer(voices);
+    }
+
+    /** @return null if this device doesn't do low latency audio */
+    @Nullable
+    static LowLatencyAudio create(Context context, int voices) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            // No PERFORMANCE_MODE_LOW_LATENCY
+            return null;
+        }
+
+        if (!context.getPackageManager()
+                .hasSystemFeature(PackageManager.FEATURE_AUDIO_LOW_LATENCY)) {
+            Timber.i("No low latency audio on this device, using SoundPool");
+            return null;
+        }
+
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager == null) {
+            return null;
+        }
+
+        int sampleRate =
+                parseInt(audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE), 0);
+        if (sampleRate <= 0) {
+            return null;
+        }
+        int framesPerBuffer =
+                parseInt(
+                        audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER),
+                        DEFAULT_FRAMES_PER_BUFFER);
+
+        Timber.i("Low latency audio: %dHz, %d frames per buffer", sampleRate, framesPerBuffer);
+        return new LowLatencyAudio(sampleRate, framesPerBuffer, voices);
+    }
+
+    private static int parseInt(@Nullable String string, int fallback) {
+        if (string == null) {
+            return fallback;
+        }
+
+        try {
+            return Integer.parseInt(string);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Start playing PCM on the given voice, replacing whatever was playing there.
+     *
+     * <p>Callers must make sure only one thread at a time calls this method.
+     *
+     * @param pcm Mono samples at {@link #getSampleRate()}, null to silence the voice
+     */
+    void play(int voiceIndex, @Nullable short[] pcm, float volume) {
+        Thread currentWriter = writer;
+        if (currentWriter == null) {
+            // Stopped, nobody would hear this
+            return;
+        }
+
+        if (!commands.offer(new Command(voiceIndex, pcm, volume))) {
+            Timber.w("Low latency audio queue full, dropping sound");
+            return;
+        }
+
+        // In case the writer is waiting for something to play
+        LockSupport.unpark(currentWriter);
+    }
+
+    /** Open the audio stream. Call from the main thread. */
+    void start() {
+        if (writer != null) {
+            return;
+        }
+
+        // Drop sounds that were asked for while we were stopping. No writer is running, so we are
+        // the consumer until we start one.
+        while (commands.poll() != null) {
+            // This block intentionally left blank
+        }
+
+        @NonNls String name = "LowLatencyAudio";
+        Thread newWriter = new Thread(this::writeUntilStopped, name);
+        newWriter.start();
+        writer = newWriter;
+    }
+
+    /** Close the audio stream. Call from the main thread. */
+    void stop() {
+        Thread stopMe = writer;
+        if (stopMe == null) {
+            return;
+        }
+        writer = null;
+
+        stopMe.interrupt();
+        try {
+            stopMe.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return null if the stream couldn't be opened */
+    @Nullable
+    private AudioTrack openTrack() {
+        int minBufferBytes =
+                AudioTrack.getMinBufferSize(
+                        sampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        AudioTrack track;
+        try {
+            track =
+                    new AudioTrack.Builder()
+                            .setAudioAttributes(
+                                    new AudioAttributes.Builder()
+                                            .setUsage(AudioAttributes.USAGE_GAME)
+                                            .setContentType(
+                                                    AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                                            .build())
+                            .setAudioFormat(
+                                    new AudioFormat.Builder()
+                                            .setSampleRate(sampleRate)
+                                            .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                                            .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                                            .build())
+                            .setBufferSizeInBytes(
+                                    Math.max(minBufferBytes, BUFFERS * framesPerBuffer * 2))
+                            .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                            .setTransferMode(AudioTrack.MODE_STREAM)
+                            .build();
+        } catch (UnsupportedOperationException e) {
+            Timber.w(e, "Opening low latency audio track failed");
+            return null;
+        }
+
+        try {
+            track.play();
+        } catch (IllegalStateException e) {
+            Timber.w(e, "Starting low latency audio track failed");
+            track.release();
+            return null;
+        }
+
+        return track;
+    }
+
+    /**
+     * The writer thread owns the audio track. If the track breaks, for example because the audio
+     * server restarted or the output device changed, it is released and a new one is opened when
+     * the next sound is asked for.
+     */
+    private void writeUntilStopped() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+
+        // Whatever was playing when we were last stopped is old news
+        mixer.stopAll();
+
+        while (true) {
+            AudioTrack track = openTrack();
+            if (track != null) {
+                try {
+                    if (!writeUntilFailed(track)) {
+                        return;
+                    }
+                } finally {
+                    track.release();
+                }
+            }
+
+            // Whatever was playing went out with the broken track
+            mixer.stopAll();
+            if (!waitForCommand()) {
+                return;
+            }
+        }
+    }
+
+    /** @return true if writing failed, false if we were interrupted */
+    private boolean writeUntilFailed(AudioTrack track) {
+        short[] buffer = new short[framesPerBuffer];
+        long pauseAfterBuffers = IDLE_PAUSE_MS * sampleRate / 1000 / framesPerBuffer;
+        long silentBuffers = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            Command command;
+            while ((command = commands.poll()) != null) {
+                mixer.start(command.voiceIndex, command.pcm, command.volume);
+            }
+
+            // Silence is written too, that's what keeps the stream warm for the next sound
+            if (mixer.mix(buffer)) {
+                silentBuffers = 0;
+            } else if (++silentBuffers > pauseAfterBuffers) {
+                track.pause();
+                if (!waitForCommand()) {
+                    return false;
+                }
+                track.play();
+                silentBuffers = 0;
+                continue;
+            }
+
+            // Blocks until there is room, which paces this loop
+            int written = track.write(buffer, 0, buffer.length, AudioTrack.WRITE_BLOCKING);
+            if (written < 0) {
+                Timber.w("Writing to low latency audio track failed: %d", written);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Wait until there's at least one command in the queue.
+     *
+     * @return false if we were interrupted
+     */
+    private boolean waitForCommand() {
+        Command command;
+        while ((command = commands.poll()) == null) {
+            // play() wakes us up
+            LockSupport.park(this);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+
+        mixer.start(command.voiceIndex, command.pcm, command.volume);
+        return true;
+    }
+}
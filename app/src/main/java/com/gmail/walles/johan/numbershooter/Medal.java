@@ -16,28 +16,64 @@
 
 package com.gmail.walles.johan.numbershooter;
 
+import android.content.res.Resources;
 import android.graphics.Color;
+import androidx.annotation.Nullable;
+import androidx.annotation.StringRes;
 import org.jetbrains.annotations.NonNls;
 
-public class Medal {
-    private final String description;
+/**
+ * Identifies one medal.
+ *
+ * <p>Medals are language independent and cheap to compare, use {@link #getDescription(Resources)}
+ * to get something to show the user.
+ */
+public final class Medal {
+    public enum Kind {
+        /** {@link #number} ways of counting started */
+        WAYS_OF_COUNTING,
+
+        /** {@link #number} percent of all levels done for {@link #gameType} */
+        PERCENT_DONE,
+
+        /** All maths involving {@link #number} done for {@link #gameType} */
+        NUMBER_DONE
+    }
+
+    public final Kind kind;
+
+    /** Null for {@link Kind#WAYS_OF_COUNTING} medals. */
+    @Nullable public final GameType gameType;
+
+    public final int number;
     public final Flavor flavor;
 
     @Override
     @NonNls
     public String toString() {
-        return flavor + ": " + description;
+        return flavor + ": " + kind + " " + gameType + " " + number;
     }
 
-    public Medal(Flavor flavor, String description) {
-        if (description == null) {
-            throw new NullPointerException("Description must not be null");
-        }
-
-        this.description = description;
+    private Medal(Kind kind, @Nullable GameType gameType, int number, Flavor flavor) {
+        this.kind = kind;
+        this.gameType = gameType;
+        this.number = number;
         this.flavor = flavor;
     }
 
+    /** @param count How many ways of counting have been started, 1-4 */
+    public static Medal waysOfCounting(int count, Flavor flavor) {
+        return new Medal(Kind.WAYS_OF_COUNTING, null, count, flavor);
+    }
+
+    public static Medal percentDone(GameType gameType, int percent, Flavor flavor) {
+        return new Medal(Kind.PERCENT_DONE, gameType, percent, flavor);
+    }
+
+    public static Medal numberDone(GameType gameType, int number, Flavor flavor) {
+        return new Medal(Kind.NUMBER_DONE, gameType, number, flavor);
+    }
+
     public enum Flavor {
         BRONZE(0x66, 0xcd, 0x7f, 0x32),
         SILVER(0x00, 0xff, 0xff, 0xff),
@@ -60,8 +96,76 @@ public class Medal {
         }
     }
 
-    public String getDescription() {
-        return description;
+    /** Resolve a localized description of this medal. */
+    public String getDescription(Resources resources) {
+        switch (kind) {
+            case WAYS_OF_COUNTING:
+                return resources.getString(getWaysOfCountingResourceId());
+
+            case PERCENT_DONE:
+                assert gameType != null;
+                return resources.getString(
+                        R.string.operation_colon_partly_done,
+                        gameType.getLocalizedName(resources),
+                        resources.getString(getProgressResourceId()));
+
+            case NUMBER_DONE:
+                assert gameType != null;
+                return resources.getString(
+                        R.string.way_of_counting_colon_sign_number_done,
+                        gameType.getLocalizedName(resources),
+                        gameType.prettyOperator,
+                        number);
+
+            default:
+                throw new UnsupportedOperationException("Unhandled medal kind: " + kind);
+        }
+    }
+
+    @StringRes
+    private int getWaysOfCountingResourceId() {
+        switch (number) {
+            case 1:
+                return R.string.started_first_way_of_counting;
+            case 2:
+                return R.string.started_second_way_of_counting;
+            case 3:
+                return R.string.started_third_way_of_counting;
+            case 4:
+                return R.string.started_final_way_of_counting;
+            default:
+                throw new UnsupportedOperationException("Unhandled ways of counting: " + number);
+        }
+    }
+
+    @StringRes
+    private int getProgressResourceId() {
+        switch (number) {
+            case 10:
+                return R.string.one_tenth_done;
+            case 20:
+                return R.string.one_fifth_done;
+            case 25:
+                return R.string.one_quarter_done;
+            case 33:
+                return R.string.one_third_done;
+            case 50:
+                return R.string.half_done;
+            case 75:
+                return R.string.three_quarters_done;
+            case 100:
+                return R.string.all_done;
+            default:
+                throw new UnsupportedOperationException("Unhandled percentage: " + number);
+        }
+    }
+
+    /** Unique for each medal, and the same between runs as long as the enums don't change. */
+    public long getId() {
+        long id = kind.ordinal();
+        id = (id << 8) | (gameType == null ? 0xff : gameType.ordinal());
+        id = (id << 32) | (number & 0xffffffffL);
+        return (id << 8) | flavor.ordinal();
     }
 
     @Override
@@ -71,10 +175,17 @@ public class Medal {
         }
 
         Medal that = (Medal) obj;
-        if (this.flavor != that.flavor) {
-            return false;
-        }
+        return this.kind == that.kind
+                && this.gameType == that.gameType
+                && this.number == that.number
+                && this.flavor == that.flavor;
+    }
 
-        return this.description.equals(that.description);
+    @Override
+    public int hashCode() {
+        int hash = kind.ordinal();
+        hash = 31 * hash + (gameType == null ? -1 : gameType.ordinal());
+        hash = 31 * hash + number;
+        return 31 * hash + flavor.ordinal();
     }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import androidx.annotation.Nullable;
+
+/**
+ * Medal images, one per {@link Medal.Flavor}, decoded once at the size we show them in and tinted
+ * up front.
+ */
+public final class MedalBitmaps {
+    @Nullable private static Bitmap[] bitmaps;
+    private static int bitmapsSizePixels;
+
+    private MedalBitmaps() {
+        // Prevent us from being instantiated
+    }
+
+    /** Must be called on the main thread. */
+    public static Bitmap get(Resources resources, Medal.Flavor flavor, int sizePixels) {
+        if (bitmaps == null || bitmapsSizePixels != sizePixels) {
+            bitmaps = new Bitmap[Medal.Flavor.values().length];
+            bitmapsSizePixels = sizePixels;
+        }
+
+        Bitmap bitmap = bitmaps[flavor.ordinal()];
+        if (bitmap == null) {
+            bitmap = createBitmap(resources, flavor, sizePixels);
+            bitmaps[flavor.ordinal()] = bitmap;
+        }
+
+        return bitmap;
+    }
+
+    private static Bitmap createBitmap(Resources resources, Medal.Flavor flavor, int sizePixels) {
+        Bitmap decoded =
+                SampledBitmaps.decodeResource(resources, R.drawable.medal, sizePixels, sizePixels);
+
+        Bitmap tinted = Bitmap.createBitmap(sizePixels, sizePixels, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        paint.setColorFilter(
+                new PorterDuffColorFilter(flavor.getColor(), PorterDuff.Mode.SRC_ATOP));
+        Canvas canvas = new Canvas(tinted);
+        canvas.scale(
+                sizePixels / (float) decoded.getWidth(), sizePixels / (float) decoded.getHeight());
+        canvas.drawBitmap(decoded, 0, 0, paint);
+        decoded.recycle();
+
+        return tinted;
+    }
+}
@@ -16,16 +16,12 @@
 
 package com.gmail.walles.johan.numbershooter;
 
-import android.content.res.Resources;
-import com.gmail.walles.johan.numbershooter.model.MathsFactory;
+import com.gmail.walles.johan.numbershooter.model.CompletionTable;
 import com.gmail.walles.johan.numbershooter.playerstate.PlayerStateV3;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import timber.log.Timber;
 
 public final class Medals {
@@ -33,325 +29,227 @@ public final class Medals {
         // Prevent us from being instantiated
     }
 
-    /** @see #get(Resources, Map) */
-    public static List<Medal> get(Resources resources, PlayerStateV3 playerState) {
-        Map<GameType, Integer> gameTypeToNextLevel = new HashMap<>();
+    /** A medal for having completed some part of all levels of one game type. */
+    private static class PercentMedal {
+        private final int percent;
+        private final Medal.Flavor flavor;
+
+        /** If empty, this medal is available for all game types. */
+        private final GameType[] gameTypes;
+
+        private PercentMedal(int percent, Medal.Flavor flavor, GameType... gameTypes) {
+            this.percent = percent;
+            this.flavor = flavor;
+            this.gameTypes = gameTypes;
+        }
+
+        private boolean isAvailableFor(GameType gameType) {
+            if (gameTypes.length == 0) {
+                return true;
+            }
+
+            for (GameType available : gameTypes) {
+                if (available == gameType) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /** Must be sorted by percentage. */
+    private static final PercentMedal[] PERCENT_MEDALS = {
+        // We need this to get addition medals often enough
+        new PercentMedal(10, Medal.Flavor.BRONZE, GameType.ADDITION),
+        // We need this to get addition medals often enough
+        new PercentMedal(20, Medal.Flavor.BRONZE, GameType.ADDITION),
+        new PercentMedal(25, Medal.Flavor.BRONZE),
+
+        // We need this to get multiplication and addition medals often enough
+        new PercentMedal(33, Medal.Flavor.BRONZE, GameType.MULTIPLICATION, GameType.ADDITION),
+        new PercentMedal(50, Medal.Flavor.BRONZE),
+        new PercentMedal(75, Medal.Flavor.SILVER),
+        new PercentMedal(100, Medal.Flavor.GOLD),
+    };
+
+    /** @see #get(int[]) */
+    public static List<Medal> get(PlayerStateV3 playerState) {
+        int[] nextLevels = new int[GameType.values().length];
         for (GameType gameType : GameType.values()) {
-            gameTypeToNextLevel.put(gameType, playerState.getHardestLevel(gameType));
+            nextLevels[gameType.ordinal()] = playerState.getHardestLevel(gameType);
         }
 
-        return get(resources, gameTypeToNextLevel);
+        return get(nextLevels);
     }
 
     /**
      * List medals awarded for the most recent round of a given game type.
      *
-     * @see #get(Resources, Map)
+     * <p>Only the thresholds crossed by that single level transition are evaluated.
      */
-    public static List<Medal> getLatest(
-            Resources resources, PlayerStateV3 playerState, GameType gameType) {
+    public static List<Medal> getLatest(PlayerStateV3 playerState, GameType gameType) {
         if (playerState.getNextLevel(gameType) == 1) {
             Timber.w("Game type not started, why was this requested?");
             return Collections.emptyList();
         }
 
-        Map<GameType, Integer> gameTypeToNextLevel = new HashMap<>();
-        for (GameType gameTypeIter : GameType.values()) {
-            gameTypeToNextLevel.put(gameTypeIter, playerState.getNextLevel(gameTypeIter));
-        }
-        List<Medal> after = get(resources, gameTypeToNextLevel);
-
-        int nextLevel = gameTypeToNextLevel.get(gameType);
-        gameTypeToNextLevel.put(gameType, nextLevel - 1);
-        List<Medal> before = get(resources, gameTypeToNextLevel);
-
-        after.removeAll(before);
-        return after;
+        return getLatest(getNextLevels(playerState), gameType);
     }
 
-    private static List<Medal> get(
-            Resources resources, Map<GameType, Integer> gameTypeToNextLevel) {
-        List<Medal> medals = new ArrayList<>();
-
-        medals.addAll(getWaysOfCountingMedals(resources, gameTypeToNextLevel));
-        medals.addAll(getPercentCompleteMedals(resources, gameTypeToNextLevel));
-        medals.addAll(getCommutativeMedals(resources, gameTypeToNextLevel));
-        medals.addAll(getNonCommutativeMedals(resources, gameTypeToNextLevel));
-
-        return medals;
-    }
-
-    private static Collection<Medal> getPercentCompleteMedals(
-            Resources resources, Map<GameType, Integer> gameTypeToNextLevel) {
-        List<Medal> medals = new LinkedList<>();
-
+    /** @return Next level to play, indexed by {@link GameType#ordinal()} */
+    static int[] getNextLevels(PlayerStateV3 playerState) {
+        int[] nextLevels = new int[GameType.values().length];
         for (GameType gameType : GameType.values()) {
-            int topLevel = MathsFactory.getTopLevel(gameType);
-            int nextLevel = gameTypeToNextLevel.get(gameType);
-            int highestCompletedLevel = nextLevel - 1;
-            int percentDone = (int) Math.floor(100 * highestCompletedLevel / (double) topLevel);
-
-            String operationName = gameType.getLocalizedName(resources);
-            if (percentDone >= 10 && gameType == GameType.ADDITION) {
-                // We need this to get addition medals often enough
-                String progress = resources.getString(R.string.one_tenth_done);
-                medals.add(
-                        new Medal(
-                                Medal.Flavor.BRONZE,
-                                resources.getString(
-                                        R.string.operation_colon_partly_done,
-                                        operationName,
-                                        progress)));
-            }
+            nextLevels[gameType.ordinal()] = playerState.getNextLevel(gameType);
+        }
 
-            if (percentDone >= 20 && gameType == GameType.ADDITION) {
-                // We need this to get addition medals often enough
-                String progress = resources.getString(R.string.one_fifth_done);
-                medals.add(
-                        new Medal(
-                                Medal.Flavor.BRONZE,
-                                resources.getString(
-                                        R.string.operation_colon_partly_done,
-                                        operationName,
-                                        progress)));
-            }
+        return nextLevels;
+    }
 
-            if (percentDone >= 25) {
-                String progress = resources.getString(R.string.one_quarter_done);
-                medals.add(
-                        new Medal(
-                                Medal.Flavor.BRONZE,
-                                resources.getString(
-                                        R.string.operation_colon_partly_done,
-                                        operationName,
-                                        progress)));
-            }
+    /**
+     * List medals awarded for completing level {@code nextLevels[gameType.ordinal()] - 1} of the
+     * given game type.
+     *
+     * @param nextLevels Next level to play, indexed by {@link GameType#ordinal()}
+     */
+    static List<Medal> getLatest(int[] nextLevels, GameType gameType) {
+        int[] previousNextLevels = nextLevels.clone();
+        previousNextLevels[gameType.ordinal()]--;
 
-            if (percentDone >= 33
-                    && (gameType == GameType.MULTIPLICATION || gameType == GameType.ADDITION)) {
-                // We need this to get multiplication and addition medals often enough
-                String progress = resources.getString(R.string.one_third_done);
-                medals.add(
-                        new Medal(
-                                Medal.Flavor.BRONZE,
-                                resources.getString(
-                                        R.string.operation_colon_partly_done,
-                                        operationName,
-                                        progress)));
-            }
+        return getCrossed(previousNextLevels, nextLevels);
+    }
 
-            if (percentDone >= 50) {
-                String progress = resources.getString(R.string.half_done);
-                medals.add(
-                        new Medal(
-                                Medal.Flavor.BRONZE,
-                                resources.getString(
-                                        R.string.operation_colon_partly_done,
-                                        operationName,
-                                        progress)));
-            }
-            if (percentDone >= 75) {
-                String progress = resources.getString(R.string.three_quarters_done);
-                medals.add(
-                        new Medal(
-                                Medal.Flavor.SILVER,
-                                resources.getString(
-                                        R.string.operation_colon_partly_done,
-                                        operationName,
-                                        progress)));
-            }
-            if (percentDone >= 100) {
-                String progress = resources.getString(R.string.all_done);
-                medals.add(
-                        new Medal(
-                                Medal.Flavor.GOLD,
-                                resources.getString(
-                                        R.string.operation_colon_partly_done,
-                                        operationName,
-                                        progress)));
-            }
-        }
+    /**
+     * List all medals awarded for having reached the given levels.
+     *
+     * @param nextLevels Next level to play, indexed by {@link GameType#ordinal()}
+     */
+    static List<Medal> get(int[] nextLevels) {
+        int[] notStarted = new int[nextLevels.length];
+        Arrays.fill(notStarted, 1);
 
-        return medals;
+        return getCrossed(notStarted, nextLevels);
     }
 
-    private static Collection<Medal> getCommutativeMedals(
-            Resources resources, Map<GameType, Integer> gameTypeToNextLevel) {
+    /**
+     * List the medals awarded for going from one set of levels to another, higher, one.
+     *
+     * <p>Game types with the same level in both sets are never looked at.
+     */
+    private static List<Medal> getCrossed(int[] from, int[] to) {
+        List<Medal> medals = new ArrayList<>();
 
-        List<Medal> medals = new LinkedList<>();
+        addWaysOfCountingMedals(countStarted(from), countStarted(to), medals);
 
         for (GameType gameType : GameType.values()) {
-            if (!gameType.isCommutative) {
+            int fromLevel = from[gameType.ordinal()];
+            int toLevel = to[gameType.ordinal()];
+            if (fromLevel == toLevel) {
                 continue;
             }
 
-            Map<Integer, Integer> doneCountsPerNumber = new HashMap<>();
-
-            List<MathsFactory.Maths> completedMaths =
-                    MathsFactory.create(gameType)
-                            .getMathsUpToLevelInclusive(gameTypeToNextLevel.get(gameType) - 1);
-            for (MathsFactory.Maths maths : completedMaths) {
-                Integer count = doneCountsPerNumber.get(maths.a);
-                if (count == null) {
-                    count = 0;
-                }
-                doneCountsPerNumber.put(maths.a, count + 1);
-
-                if (maths.a == maths.b) {
-                    // Don't count 5*5 twice
-                    continue;
-                }
-
-                count = doneCountsPerNumber.get(maths.b);
-                if (count == null) {
-                    count = 0;
-                }
-                doneCountsPerNumber.put(maths.b, count + 1);
-            }
+            addPercentCompleteMedals(
+                    gameType,
+                    getPercentDone(gameType, fromLevel),
+                    getPercentDone(gameType, toLevel),
+                    medals);
+        }
 
-            int maxDoneNumber = 0;
-            for (int number = 1; number <= gameType.topNumber; number++) {
-                Integer doneCount = doneCountsPerNumber.get(number);
-                if (doneCount == null) {
-                    // Table not started
+        // Commutative game types first, then non-commutative ones
+        for (boolean commutative : new boolean[] {true, false}) {
+            for (GameType gameType : GameType.values()) {
+                if (gameType.isCommutative != commutative) {
                     continue;
                 }
 
-                // 19 here is:
-                // x * [1-10]: There are 10 of these
-                // [1-10] * x: There are 10 of these
-                // So it's 20, but one of them is x * x and we count that only once.
-                if (doneCount < 2 * gameType.topNumber - 1) {
-                    // Number not done
+                int fromLevel = from[gameType.ordinal()];
+                int toLevel = to[gameType.ordinal()];
+                if (fromLevel == toLevel) {
                     continue;
                 }
 
-                maxDoneNumber = number;
-            }
-
-            for (int number = 1; number <= maxDoneNumber; number++) {
-                Medal.Flavor flavor = Medal.Flavor.BRONZE;
-                if (number >= (gameType.topNumber * 6) / 10) {
-                    flavor = Medal.Flavor.SILVER;
-                }
-                if (number >= gameType.topNumber) {
-                    flavor = Medal.Flavor.GOLD;
-                }
-                medals.add(
-                        new Medal(
-                                flavor,
-                                resources.getString(
-                                        R.string.way_of_counting_colon_sign_number_done,
-                                        gameType.getLocalizedName(resources),
-                                        gameType.prettyOperator,
-                                        number)));
+                CompletionTable completionTable = CompletionTable.get(gameType);
+                addCompletedNumberMedals(
+                        gameType,
+                        completionTable.getMaxDoneNumber(fromLevel - 1),
+                        completionTable.getMaxDoneNumber(toLevel - 1),
+                        medals);
             }
         }
 
         return medals;
     }
 
-    private static Collection<Medal> getNonCommutativeMedals(
-            Resources resources, Map<GameType, Integer> gameTypeToNextLevel) {
+    private static int countStarted(int[] nextLevels) {
+        int startedWaysOfCounting = 0;
+        for (int nextLevel : nextLevels) {
+            if (nextLevel > 1) {
+                startedWaysOfCounting++;
+            }
+        }
 
-        List<Medal> medals = new LinkedList<>();
+        return startedWaysOfCounting;
+    }
 
-        for (GameType gameType : GameType.values()) {
-            if (gameType.isCommutative) {
+    private static int getPercentDone(GameType gameType, int nextLevel) {
+        int topLevel = CompletionTable.get(gameType).getTopLevel();
+        int highestCompletedLevel = nextLevel - 1;
+        return (int) Math.floor(100 * highestCompletedLevel / (double) topLevel);
+    }
+
+    /** Award percent medals for thresholds in the range {@code (fromPercent, toPercent]}. */
+    private static void addPercentCompleteMedals(
+            GameType gameType, int fromPercent, int toPercent, List<Medal> medals) {
+        for (PercentMedal percentMedal : PERCENT_MEDALS) {
+            if (percentMedal.percent <= fromPercent) {
                 continue;
             }
-
-            Map<Integer, Integer> doneCountsPerNumber = new HashMap<>();
-
-            List<MathsFactory.Maths> completedMaths =
-                    MathsFactory.create(gameType)
-                            .getMathsUpToLevelInclusive(gameTypeToNextLevel.get(gameType) - 1);
-            for (MathsFactory.Maths maths : completedMaths) {
-                Integer count = doneCountsPerNumber.get(maths.b);
-                if (count == null) {
-                    count = 0;
-                }
-                doneCountsPerNumber.put(maths.b, count + 1);
+            if (percentMedal.percent > toPercent) {
+                break;
             }
-
-            int maxDoneNumber = 0;
-            for (int number = 1; number <= gameType.topNumber; number++) {
-                Integer doneCount = doneCountsPerNumber.get(number);
-                if (doneCount == null) {
-                    // Number not started
-                    continue;
-                }
-
-                if (doneCount < gameType.topNumber) {
-                    // Number not done
-                    continue;
-                }
-
-                maxDoneNumber = number;
+            if (!percentMedal.isAvailableFor(gameType)) {
+                continue;
             }
 
-            for (int number = 1; number <= maxDoneNumber; number++) {
-                Medal.Flavor flavor = Medal.Flavor.BRONZE;
-                if (number >= (gameType.topNumber * 6) / 10) {
-                    flavor = Medal.Flavor.SILVER;
-                }
-                if (number >= gameType.topNumber) {
-                    flavor = Medal.Flavor.GOLD;
-                }
-                medals.add(
-                        new Medal(
-                                flavor,
-                                resources.getString(
-                                        R.string.way_of_counting_colon_sign_number_done,
-                                        gameType.getLocalizedName(resources),
-                                        gameType.prettyOperator,
-                                        number)));
-            }
+            medals.add(Medal.percentDone(gameType, percentMedal.percent, percentMedal.flavor));
         }
-
-        return medals;
     }
 
-    /** Figure out medals for how many ways of counting the user has tried out. */
-    private static Collection<Medal> getWaysOfCountingMedals(
-            Resources resources, Map<GameType, Integer> gameTypeToNextLevel) {
-        List<Medal> medals = new LinkedList<>();
-
-        int startedWaysOfCounting = 0;
-        for (int nextLevel : gameTypeToNextLevel.values()) {
-            if (nextLevel > 1) {
-                startedWaysOfCounting++;
+    /** Award medals for the numbers in the range {@code (fromNumber, toNumber]}. */
+    private static void addCompletedNumberMedals(
+            GameType gameType, int fromNumber, int toNumber, List<Medal> medals) {
+        for (int number = fromNumber + 1; number <= toNumber; number++) {
+            Medal.Flavor flavor = Medal.Flavor.BRONZE;
+            if (number >= (gameType.topNumber * 6) / 10) {
+                flavor = Medal.Flavor.SILVER;
+            }
+            if (number >= gameType.topNumber) {
+                flavor = Medal.Flavor.GOLD;
             }
+            medals.add(Medal.numberDone(gameType, number, flavor));
         }
+    }
 
-        if (startedWaysOfCounting >= 1) {
-            medals.add(
-                    new Medal(
-                            Medal.Flavor.BRONZE,
-                            resources.getString(R.string.started_first_way_of_counting)));
+    /**
+     * Award medals for how many ways of counting the user has tried out, in the range {@code
+     * (fromCount, toCount]}.
+     */
+    private static void addWaysOfCountingMedals(int fromCount, int toCount, List<Medal> medals) {
+        if (fromCount < 1 && toCount >= 1) {
+            medals.add(Medal.waysOfCounting(1, Medal.Flavor.BRONZE));
         }
 
-        if (startedWaysOfCounting >= 2) {
-            medals.add(
-                    new Medal(
-                            Medal.Flavor.BRONZE,
-                            resources.getString(R.string.started_second_way_of_counting)));
+        if (fromCount < 2 && toCount >= 2) {
+            medals.add(Medal.waysOfCounting(2, Medal.Flavor.BRONZE));
         }
 
-        if (startedWaysOfCounting >= 3) {
-            medals.add(
-                    new Medal(
-                            Medal.Flavor.SILVER,
-                            resources.getString(R.string.started_third_way_of_counting)));
+        if (fromCount < 3 && toCount >= 3) {
+            medals.add(Medal.waysOfCounting(3, Medal.Flavor.SILVER));
         }
 
-        if (startedWaysOfCounting >= 4) {
-            medals.add(
-                    new Medal(
-                            Medal.Flavor.GOLD,
-                            resources.getString(R.string.started_final_way_of_counting)));
+        if (fromCount < 4 && toCount >= 4) {
+            medals.add(Medal.waysOfCounting(4, Medal.Flavor.GOLD));
         }
-
-        return medals;
     }
 }
@@ -17,7 +17,6 @@
 package com.gmail.walles.johan.numbershooter;
 
 import android.content.Context;
-import android.graphics.drawable.Drawable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -25,38 +24,79 @@ import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MedalsAdapter extends RecyclerView.Adapter<MedalsAdapter.MedalViewHolder> {
     private final int medalSizePixels;
-    private final List<Medal> medals;
+    private List<Medal> medals;
     private final Context context;
 
+    /** Medal descriptions are resolved on first display, then cached here. */
+    private final Map<Medal, String> descriptions = new HashMap<>();
+
     public MedalsAdapter(Context context, int medalSizePixels, List<Medal> medals) {
         this.medalSizePixels = medalSizePixels;
         this.medals = medals;
         this.context = context;
+
+        setHasStableIds(true);
+    }
+
+    /** Replace the list of medals to show, animating only the rows that actually changed. */
+    public void setMedals(List<Medal> newMedals) {
+        List<Medal> oldMedals = medals;
+        DiffUtil.DiffResult diff =
+                DiffUtil.calculateDiff(
+                        new DiffUtil.Callback() {
+                            @Override
+                            public int getOldListSize() {
+                                return oldMedals.size();
+                            }
+
+                            @Override
+                            public int getNewListSize() {
+                                return newMedals.size();
+                            }
+
+                            @Override
+                            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                                return oldMedals
+                                        .get(oldPosition)
+                                        .equals(newMedals.get(newPosition));
+                            }
+
+                            @Override
+                            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                                // Medals are their own identities, same medal means same contents
+                                return true;
+                            }
+                        });
+
+        medals = newMedals;
+        diff.dispatchUpdatesTo(this);
     }
 
     static class MedalViewHolder extends RecyclerView.ViewHolder {
-        private final Drawable medalDrawable;
+        private final ImageView imageView;
+        private final TextView description;
 
-        protected MedalViewHolder(Drawable medalDrawable, View itemView) {
+        protected MedalViewHolder(View itemView, int medalSizePixels) {
             super(itemView);
 
-            this.medalDrawable = medalDrawable;
-        }
-
-        protected void bind(Medal medal, int medalSizePixels) {
-            ImageView imageView = itemView.findViewById(R.id.medalImage);
+            imageView = itemView.findViewById(R.id.medalImage);
             imageView.setLayoutParams(
                     new LinearLayout.LayoutParams(medalSizePixels, medalSizePixels));
-            imageView.setImageDrawable(medalDrawable);
-            imageView.setColorFilter(medal.flavor.getColor());
+            description = itemView.findViewById(R.id.description);
+        }
 
-            TextView description = itemView.findViewById(R.id.description);
-            description.setText(medal.getDescription());
+        protected void bind(Medal medal, String descriptionText, int medalSizePixels) {
+            imageView.setImageBitmap(
+                    MedalBitmaps.get(itemView.getResources(), medal.flavor, medalSizePixels));
+            description.setText(descriptionText);
         }
     }
 
@@ -67,17 +107,25 @@ public class MedalsAdapter extends RecyclerView.Adapter<MedalsAdapter.MedalViewH
                 LayoutInflater.from(parent.getContext())
                         .inflate(R.layout.medal_view, parent, false);
 
-        Drawable medalDrawable = context.getDrawable(R.drawable.medal);
-        if (medalDrawable == null) {
-            throw new RuntimeException("Failed to load medal image");
+        return new MedalViewHolder(medalView, medalSizePixels);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull MedalViewHolder holder, int position) {
+        Medal medal = medals.get(position);
+
+        String description = descriptions.get(medal);
+        if (description == null) {
+            description = medal.getDescription(context.getResources());
+            descriptions.put(medal, description);
         }
 
-        return new MedalViewHolder(medalDrawable, medalView);
+        holder.bind(medal, description, medalSizePixels);
     }
 
     @Override
-    public void onBindViewHolder(@NonNull MedalViewHolder holder, int position) {
-        holder.bind(medals.get(position), medalSizePixels);
+    public long getItemId(int position) {
+        return medals.get(position).getId();
     }
 
     @Override
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.gmail.walles.johan.numbershooter.playerstate.PlayerStateV3;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import timber.log.Timber;
+
+/**
+ * Computes medals on a background thread and publishes them on the main thread.
+ *
+ * <p>While a level is being played, the medals for clearing it can be computed up front using
+ * {@link #prepareLatest(Context, GameType)}, so that they are ready by the time the level has been
+ * cleared.
+ */
+public class MedalsCalculator {
+    public interface Listener {
+        /** Called on the main thread. */
+        void onMedalsComputed(List<Medal> medals);
+    }
+
+    /** One thread only, so that preparations are always done before results are requested. */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Next levels for which {@link #preparedMedals} were computed. Only touched by executor. */
+    @Nullable private int[] preparedNextLevels;
+
+    @Nullable private GameType preparedGameType;
+    @Nullable private List<Medal> preparedMedals;
+
+    /**
+     * Start computing which medals will be awarded if the player clears the next level of the given
+     * game type.
+     */
+    public void prepareLatest(Context context, GameType gameType) {
+        Context applicationContext = context.getApplicationContext();
+        executor.execute(
+                () -> {
+                    PlayerStateV3 playerState;
+                    try {
+                        playerState = NumbervadersApp.getPlayerState(applicationContext);
+                    } catch (IOException e) {
+                        Timber.w(e, "Failed to load player state for preparing medals");
+                        return;
+                    }
+
+                    int[] nextLevels = Medals.getNextLevels(playerState);
+
+                    // This is what reportSuccess() will do if the player clears the level
+                    nextLevels[gameType.ordinal()]++;
+
+                    preparedMedals = Medals.getLatest(nextLevels, gameType);
+                    preparedNextLevels = nextLevels;
+                    preparedGameType = gameType;
+                });
+    }
+
+    /**
+     * Compute medals awarded for the most recently cleared level of the given game type, and mark
+     * them as awarded.
+     *
+     * <p>If medals have already been awarded for that level, the listener gets an empty list.
+     */
+    public void awardLatest(Context context, GameType gameType, Listener listener) {
+        Context applicationContext = context.getApplicationContext();
+        executor.execute(
+                () -> {
+                    List<Medal> medals;
+                    try {
+                        PlayerStateV3 playerState =
+                                NumbervadersApp.getPlayerState(applicationContext);
+                        if (playerState.medalsAlreadyAwarded(gameType)) {
+                            // Medals already awarded for this level, never mind
+                            medals = Collections.emptyList();
+                        } else {
+                            playerState.setMedalsAwarded(gameType);
+                            medals = getLatest(playerState, gameType);
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(
+                                "Accessing player state before listing medals failed", e);
+                    }
+
+                    mainHandler.post(() -> listener.onMedalsComputed(medals));
+                });
+    }
+
+    /** Compute all medals the player has earned so far. */
+    public void getAll(Context context, Listener listener) {
+        Context applicationContext = context.getApplicationContext();
+        executor.execute(
+                () -> {
+                    List<Medal> medals;
+                    try {
+                        medals = Medals.get(NumbervadersApp.getPlayerState(applicationContext));
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to get player state", e);
+                    }
+
+                    mainHandler.post(() -> listener.onMedalsComputed(medals));
+                });
+    }
+
+    /** Must be called on the executor thread. */
+    private List<Medal> getLatest(PlayerStateV3 playerState, GameType gameType) {
+        int[] nextLevels = Medals.getNextLevels(playerState);
+        if (gameType == preparedGameType
+                && Arrays.equals(nextLevels, preparedNextLevels)
+                && preparedMedals != null) {
+            Timber.d("Using prepared medals for %s", gameType);
+            return preparedMedals;
+        }
+
+        Timber.d("No prepared medals for %s, computing them now", gameType);
+        return Medals.getLatest(playerState, gameType);
+    }
+}
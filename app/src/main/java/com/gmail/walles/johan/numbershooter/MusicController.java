@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import timber.log.Timber;
+
+/**
+ * The background music of this app, owned by {@link NumbervadersApp}.
+ *
+ * <p>There is one player for the whole app, so moving between activities doesn't restart or
+ * re-decode the music. Activities {@link #acquire()} the music when they become visible and {@link
+ * #release()} it when they stop being visible. When nobody holds on to the music anymore it fades
+ * out and pauses, and when somebody acquires it again it fades back in from where it was.
+ *
+ * <p>During activity transitions the new activity is started before the old one is stopped, so the
+ * music just keeps playing.
+ */
+public class MusicController {
+    private static final long FADE_MS = 500;
+    private static final long FADE_STEP_MS = 25;
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable fadeStep = this::fadeStep;
+
+    /**
+     * Created on {@link #acquire()} when missing, released by {@link #trimUnused()} and on errors.
+     */
+    @Nullable private MediaPlayer player;
+
+    private boolean prepared;
+    private int users;
+
+    /** 0-100 */
+    private float volumePercent;
+
+    public MusicController(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /** Start the music, or keep it playing if it already is. */
+    @MainThread
+    public void acquire() {
+        users++;
+
+        if (player == null) {
+            // First user, or the player failed since the last acquire. Will start playing once
+            // prepared.
+            createPlayer();
+            return;
+        }
+
+        if (users > 1 || !prepared) {
+            return;
+        }
+
+        if (!player.isPlaying()) {
+            player.start();
+        }
+        startFading();
+    }
+
+    /** Fade out the music if nobody else wants it. */
+    @MainThread
+    public void release() {
+        if (users <= 0) {
+            throw new IllegalStateException("Music released more times than acquired");
+        }
+
+        users--;
+        if (users == 0 && prepared) {
+            startFading();
+        }
+    }
+
+    /** Free the music player if the music isn't playing. It will be recreated on demand. */
+    @MainThread
+    public void trimUnused() {
+        if (users > 0 || player == null) {
+            return;
+        }
+
+        Timber.i("Releasing unused music player");
+        releasePlayer();
+    }
+
+    private void createPlayer() {
+        MediaPlayer newPlayer = new MediaPlayer();
+        newPlayer.setAudioAttributes(
+                new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_GAME)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build());
+        newPlayer.setLooping(true);
+
+        try (AssetFileDescriptor fd =
+                context.getResources().openRawResourceFd(R.raw.bensound_scifi)) {
+            newPlayer.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+        } catch (IOException e) {
+            Timber.w(e, "Loading music failed");
+            newPlayer.release();
+            return;
+        }
+
+        newPlayer.setOnPreparedListener(
+                mediaPlayer -> {
+                    prepared = true;
+                    volumePercent = 0;
+                    applyVolume();
+                    if (users > 0) {
+                        mediaPlayer.start();
+                        startFading();
+                    }
+                });
+        newPlayer.setOnErrorListener(
+                (mediaPlayer, what, extra) -> {
+                    Timber.w("Music player failed, will retry on next acquire: %d/%d", what, extra);
+                    releasePlayer();
+                    return true;
+                });
+
+        // Don't block activity startup on decoding
+        newPlayer.prepareAsync();
+        player = newPlayer;
+    }
+
+    private void releasePlayer() {
+        handler.removeCallbacks(fadeStep);
+        if (player != null) {
+            player.release();
+        }
+        player = null;
+        prepared = false;
+    }
+
+    private void startFading() {
+        handler.removeCallbacks(fadeStep);
+        handler.post(fadeStep);
+    }
+
+    /** Move the volume one step towards where it should be. */
+    private void fadeStep() {
+        if (player == null || !prepared) {
+            return;
+        }
+
+        float targetPercent = users > 0 ? 100 : 0;
+        float stepPercent = 100f * FADE_STEP_MS / FADE_MS;
+        if (volumePercent < targetPercent) {
+            volumePercent = Math.min(targetPercent, volumePercent + stepPercent);
+        } else {
+            volumePercent = Math.max(targetPercent, volumePercent - stepPercent);
+        }
+        applyVolume();
+
+        if (volumePercent != targetPercent) {
+            handler.postDelayed(fadeStep, FADE_STEP_MS);
+            return;
+        }
+
+        if (targetPercent == 0) {
+            player.pause();
+        }
+    }
+
+    /** From: https://stackoverflow.com/a/12075910/473672 */
+    private void applyVolume() {
+        assert player != null;
+
+        final int maxVolume = 100;
+        if (volumePercent >= maxVolume) {
+            player.setVolume(1, 1);
+            return;
+        }
+
+        float log1 = (float) (Math.log(maxVolume - volumePercent) / Math.log(maxVolume));
+        player.setVolume(1 - log1, 1 - log1);
+    }
+}
@@ -16,21 +16,235 @@
 
 package com.gmail.walles.johan.numbershooter;
 
+import android.app.Activity;
 import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.MainThread;
 import androidx.annotation.Nullable;
+import com.gmail.walles.johan.numbershooter.playerstate.PlayerStateRepository;
+import com.gmail.walles.johan.numbershooter.playerstate.PlayerStateV3;
+import com.gmail.walles.johan.numbershooter.playerstate.SessionHistory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import timber.log.Timber;
 
 public class NumbervadersApp extends Application {
+    /** One thread each for loading the player state and decoding the background. */
+    private static final int STARTUP_THREADS = 2;
+
+    private final MedalsCalculator medalsCalculator = new MedalsCalculator();
+
+    @Nullable private PlayerStateRepository playerStateRepository;
+    @Nullable private SessionHistory sessionHistory;
+    @Nullable private ObjectiveSoundPool soundPool;
+    @Nullable private MusicController musicController;
+
+    /** Only touched on the main thread. */
+    private boolean playerStateLoaded;
+
+    /** Waiting for the player state to be loaded, only touched on the main thread. */
+    private final List<Runnable> playerStateListeners = new ArrayList<>();
+
+    /** Only available in debug builds. */
+    @Nullable private Watchdog watchdog;
+
+    public static MedalsCalculator getMedalsCalculator(Context context) {
+        return ((NumbervadersApp) context.getApplicationContext()).medalsCalculator;
+    }
+
+    /** The one player state shared by everything in this app. */
+    public static PlayerStateV3 getPlayerState(Context context) throws IOException {
+        return getPlayerStateRepository(context).get();
+    }
+
+    public static SessionHistory getSessionHistory(Context context) {
+        NumbervadersApp app = (NumbervadersApp) context.getApplicationContext();
+        assert app.sessionHistory != null;
+        return app.sessionHistory;
+    }
+
+    public static ObjectiveSoundPool getSoundPool(Context context) {
+        NumbervadersApp app = (NumbervadersApp) context.getApplicationContext();
+        assert app.soundPool != null;
+        return app.soundPool;
+    }
+
+    public static MusicController getMusicController(Context context) {
+        NumbervadersApp app = (NumbervadersApp) context.getApplicationContext();
+        assert app.musicController != null;
+        return app.musicController;
+    }
+
+    /**
+     * Run a callback once the player state has been loaded, so that {@link #getPlayerState} won't
+     * block. If it has been loaded already, the callback is run right away so that screens showing
+     * it don't flicker.
+     */
+    @MainThread
+    public static void whenPlayerStateLoaded(Context context, Runnable callback) {
+        NumbervadersApp app = (NumbervadersApp) context.getApplicationContext();
+        if (app.playerStateLoaded) {
+            callback.run();
+            return;
+        }
+
+        app.playerStateListeners.add(callback);
+    }
+
+    /** @return null in release builds */
+    @Nullable
+    public static Watchdog getWatchdog(Context context) {
+        return ((NumbervadersApp) context.getApplicationContext()).watchdog;
+    }
+
+    private static PlayerStateRepository getPlayerStateRepository(Context context) {
+        NumbervadersApp app = (NumbervadersApp) context.getApplicationContext();
+        assert app.playerStateRepository != null;
+        return app.playerStateRepository;
+    }
+
     @Override
     public void onCreate() {
+        StartupTrace.begin();
         super.onCreate();
 
         if (BuildConfig.DEBUG) {
             Timber.plant(new Timber.DebugTree());
+            watchdog = Watchdog.install(this);
         } else {
             Timber.plant(new CrashReportingTree());
         }
+
+        playerStateRepository = new PlayerStateRepository(PlayerStateV3.getFile(this));
+
+        // Get loading and decoding out of the way before the first activity asks for it
+        startStartupTasks(playerStateRepository);
+
+        sessionHistory = new SessionHistory(this);
+
+        // Start loading all sound effects now, so they're ready when the first level starts
+        soundPool = new ObjectiveSoundPool(this);
+
+        musicController = new MusicController(this);
+
+        registerActivityLifecycleCallbacks(
+                new ActivityLifecycleCallbacksAdapter() {
+                    private int startedActivities = 0;
+
+                    @Override
+                    public void onActivityStarted(Activity activity) {
+                        startedActivities++;
+                        if (startedActivities == 1) {
+                            getSoundPool(activity).setInForeground(true);
+                        }
+                    }
+
+                    @Override
+                    public void onActivityStopped(Activity activity) {
+                        startedActivities--;
+                        if (startedActivities == 0) {
+                            getSoundPool(activity).setInForeground(false);
+                        }
+                    }
+
+                    @Override
+                    public void onActivityPaused(Activity activity) {
+                        // We might get killed after this, get any pending changes onto disk
+                        getPlayerStateRepository(activity).flush();
+                        getSessionHistory(activity).flush();
+                    }
+                });
+
+        StartupTrace.mark(StartupTrace.APP_CREATED);
+    }
+
+    /** Load and decode what the first screen needs, in parallel and off the main thread. */
+    private void startStartupTasks(PlayerStateRepository repository) {
+        ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(
+                        STARTUP_THREADS,
+                        STARTUP_THREADS,
+                        1,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        runnable -> {
+                            @NonNls String name = "Startup";
+                            return new Thread(runnable, name);
+                        });
+
+        // Don't keep idle threads around once startup is done
+        executor.allowCoreThreadTimeOut(true);
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        executor.execute(
+                () -> {
+                    try {
+                        repository.get();
+                    } catch (IOException e) {
+                        // Whoever asks for the player state will get this exception again
+                        Timber.e(e, "Loading player state failed");
+                    }
+                    mainHandler.post(this::onPlayerStateLoaded);
+                });
+        executor.execute(() -> BackgroundBitmap.preload(getResources()));
+    }
+
+    @MainThread
+    private void onPlayerStateLoaded() {
+        playerStateLoaded = true;
+        for (Runnable listener : playerStateListeners) {
+            listener.run();
+        }
+        playerStateListeners.clear();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (level < TRIM_MEMORY_BACKGROUND) {
+            return;
+        }
+
+        if (soundPool != null) {
+            soundPool.trimUnused();
+        }
+        if (musicController != null) {
+            musicController.trimUnused();
+        }
+    }
+
+    /** Implements all callbacks as no-ops, override the ones you need. */
+    static class ActivityLifecycleCallbacksAdapter implements ActivityLifecycleCallbacks {
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {}
+
+        @Override
+        public void onActivityStarted(Activity activity) {}
+
+        @Override
+        public void onActivityResumed(Activity activity) {}
+
+        @Override
+        public void onActivityPaused(Activity activity) {}
+
+        @Override
+        public void onActivityStopped(Activity activity) {}
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {}
     }
 
     private static final class CrashReportingTree extends Timber.Tree {
@@ -17,37 +17,135 @@
 package com.gmail.walles.johan.numbershooter;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaMetadataRetriever;
 import android.media.SoundPool;
+import android.os.Process;
+import android.os.SystemClock;
+import androidx.annotation.MainThread;
 import androidx.annotation.Nullable;
 import androidx.annotation.RawRes;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
 import org.jetbrains.annotations.NonNls;
 import timber.log.Timber;
 
+/**
+ * The one sound pool of this app, owned by {@link NumbervadersApp}.
+ *
+ * <p>All sound effects are loaded in the background when the app starts, so that they are ready to
+ * go by the time anybody wants to play them. Users {@link #get} their own {@link SoundEffect}
+ * handles and {@link SoundEffect#release} them when done. Samples nobody holds a handle to can be
+ * unloaded with {@link #trimUnused()} when memory is low, they will then be loaded again on the
+ * next {@link #get}.
+ *
+ * <p>We have fewer voices than there can be simultaneous sounds during busy moments. A {@link
+ * SoundMixer} decides which sounds get to play based on their priorities, and coalesces repeated
+ * triggers of the same sound.
+ *
+ * <p>{@link SoundEffect#play()} is called from the game loop, but {@link SoundPool#play} can block
+ * on calls to the system's audio service. So play requests are put in a lock free queue, and the
+ * actual playing happens on a separate thread.
+ *
+ * <p>On devices that support it, effects are decoded to PCM and played through {@link
+ * LowLatencyAudio} rather than through the {@link SoundPool}, which is too slow for key clicks to
+ * feel immediate. The {@link SoundPool} remains the fallback for everything else.
+ */
 public class ObjectiveSoundPool {
-    public class SoundEffect {
+    private static final int VOICES = 4;
+
+    /** Assumed sample length until we know better. */
+    private static final long DEFAULT_DURATION_MS = 1000;
+
+    /** Every sound effect in the app. */
+    @RawRes
+    private static final int[] ALL_EFFECTS = {
+        R.raw.one_fire_cracker_goes_off,
+        R.raw.cannon_explosion,
+        R.raw.maths_killed,
+        R.raw.maths_arriving,
+        R.raw.wrong_answer,
+        R.raw.level_cleared,
+        R.raw.keydown,
+        R.raw.keyup,
+        R.raw.medal_earned_tada,
+    };
+
+    /** One loaded sound, shared between all {@link SoundEffect}s playing it. */
+    private static class Sample {
+        @RawRes private final int resId;
         private final String name;
-        private final int sampleId;
-        private boolean playRequestedWhileLoading = false;
-        private float volume = 1.0f;
 
-        private SoundEffect(String name, int sampleId) {
+        /**
+         * 0 means not loaded (yet), -1 means loading or that it isn't in the {@link SoundPool}
+         * because we have {@link #pcm} for it.
+         */
+        private int sampleId;
+
+        private boolean loaded;
+        private int refCount;
+        private long durationMs = DEFAULT_DURATION_MS;
+
+        /** Only set when we have {@link #lowLatencyAudio} and decoding went fine. */
+        @Nullable private short[] pcm;
+
+        @Nullable private SoundEffect playRequestedWhileLoading;
+
+        private Sample(@RawRes int resId, String name) {
+            this.resId = resId;
             this.name = name;
-            this.sampleId = sampleId;
         }
+    }
+
+    /** A handle to a shared sample, with its own volume and priority. */
+    public class SoundEffect {
+        private final Sample sample;
+        private float volume = 1.0f;
+        private int priority = 0;
+        private long minRetriggerMs = SoundMixer.DEFAULT_MIN_RETRIGGER_MS;
+        private boolean released = false;
 
+        private SoundEffect(Sample sample) {
+            this.sample = sample;
+        }
+
+        /** Queue this effect for playing. Never blocks. */
+        @MainThread
         public void play() {
-            if (soundPool == null) {
-                throw new IllegalStateException("Sound pool closed");
+            if (released) {
+                throw new IllegalStateException("Sound effect released: " + sample.name);
             }
 
-            int result = soundPool.play(sampleId, volume, volume, 0, 0, 1);
-            if (result == 0) {
-                Timber.w("Playing <%s> sound failed", name);
-                playRequestedWhileLoading = true;
+            if (!playQueue.offer(this)) {
+                Timber.w("Sound queue full, dropping <%s>", sample.name);
+                return;
             }
+            LockSupport.unpark(dispatcher);
+        }
+
+        /**
+         * When we run out of voices, higher priority sounds can take over voices from lower
+         * priority ones. Default priority is 0.
+         */
+        public SoundEffect setPriority(int priority) {
+            this.priority = priority;
+
+            return this;
+        }
+
+        /** Ignore requests to play this sample if it was last started less than this long ago. */
+        public SoundEffect setMinRetriggerMs(long minRetriggerMs) {
+            this.minRetriggerMs = minRetriggerMs;
+
+            return this;
         }
 
         public SoundEffect setVolume(double zeroToOne) {
@@ -59,65 +157,292 @@ public class ObjectiveSoundPool {
 
             return this;
         }
+
+        /** Call when you won't play this effect anymore. */
+        public void release() {
+            if (released) {
+                return;
+            }
+
+            synchronized (ObjectiveSoundPool.this) {
+                released = true;
+                sample.refCount--;
+            }
+        }
     }
 
-    @Nullable private SoundPool soundPool;
+    private final Context context;
+    private final SoundPool soundPool;
+    private final SoundMixer mixer = new SoundMixer(VOICES);
+
+    /** Null if this device doesn't do low latency audio. */
+    @Nullable private final LowLatencyAudio lowLatencyAudio;
+
+    /** Produced by the main thread, consumed by {@link #dispatcher}. */
+    private final SpscRingBuffer<SoundEffect> playQueue = new SpscRingBuffer<>(64);
 
-    @Nullable private List<SoundEffect> soundEffects = new ArrayList<>();
+    private final Thread dispatcher;
 
-    public ObjectiveSoundPool() {
-        soundPool = new SoundPool.Builder().setMaxStreams(3).build();
+    /** Loading opens resource files, so we do that in the background. */
+    private final ExecutorService loader =
+            Executors.newSingleThreadExecutor(
+                    runnable -> {
+                        @NonNls String name = "SoundLoader";
+                        return new Thread(runnable, name);
+                    });
+
+    private final Map<Integer, Sample> samplesByResId = new HashMap<>();
+
+    /**
+     * Sample IDs that have finished loading.
+     *
+     * <p>Loading can finish before {@link SoundPool#load} has returned the sample ID to us, this is
+     * how we find out about that.
+     */
+    private final Set<Integer> loadedSampleIds = new HashSet<>();
+
+    public ObjectiveSoundPool(Context context) {
+        this.context = context.getApplicationContext();
+
+        soundPool = new SoundPool.Builder().setMaxStreams(VOICES).build();
+        lowLatencyAudio = LowLatencyAudio.create(this.context, VOICES);
         soundPool.setOnLoadCompleteListener(
                 (soundPool, sampleId, status) -> {
-                    SoundEffect soundEffect = getSoundEffectById(sampleId);
-
                     if (status != 0) {
-                        Timber.w("Loading <%s> sound failed: %d", soundEffect.name, status);
+                        Timber.w("Loading sample %d failed: %d", sampleId, status);
                         return;
                     }
 
-                    Timber.i("Sound effect loaded: <%s>", soundEffect.name);
+                    synchronized (this) {
+                        loadedSampleIds.add(sampleId);
+                        for (Sample sample : samplesByResId.values()) {
+                            if (sample.sampleId == sampleId) {
+                                onLoaded(sample);
+                            }
+                        }
+                    }
+                });
 
-                    if (soundEffect.playRequestedWhileLoading) {
-                        Timber.i("Playing now-loaded sound <%s>", soundEffect.name);
-                        soundEffect.play();
+        synchronized (this) {
+            for (int resId : ALL_EFFECTS) {
+                getSample(resId);
+            }
+        }
+
+        @NonNls String dispatcherName = "SoundDispatcher";
+        dispatcher = new Thread(this::dispatchForever, dispatcherName);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    private void dispatchForever() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+
+        //noinspection InfiniteLoopStatement
+        while (true) {
+            SoundEffect soundEffect = playQueue.poll();
+            if (soundEffect == null) {
+                // Wait for SoundEffect.play() to wake us up
+                LockSupport.park(this);
+                continue;
+            }
+
+            play(soundEffect);
+        }
+    }
+
+    /** Get a handle to a sound effect, {@link SoundEffect#release} it when you're done. */
+    public synchronized SoundEffect get(@RawRes int resId) {
+        Sample sample = getSample(resId);
+        sample.refCount++;
+        return new SoundEffect(sample);
+    }
+
+    /** Get a sample, and start loading it if needed. */
+    private Sample getSample(@RawRes int resId) {
+        Sample sample = samplesByResId.get(resId);
+        if (sample == null) {
+            sample = new Sample(resId, context.getResources().getResourceEntryName(resId));
+            samplesByResId.put(resId, sample);
+        }
+
+        if (sample.sampleId == 0) {
+            load(sample);
+        }
+
+        return sample;
+    }
+
+    private void load(Sample sample) {
+        // Mark as being loaded so we don't start loading it twice
+        sample.sampleId = -1;
+
+        loader.execute(
+                () -> {
+                    long durationMs = getDurationMs(sample.resId);
+                    short[] pcm = getPcm(sample.resId);
+                    if (pcm != null) {
+                        assert lowLatencyAudio != null;
+                        durationMs = pcm.length * 1000L / lowLatencyAudio.getSampleRate();
+                    }
+
+                    if (pcm != null) {
+                        // Played through low latency audio only, don't waste SoundPool memory
+                        synchronized (this) {
+                            sample.durationMs = durationMs;
+                            sample.pcm = pcm;
+                            onLoaded(sample);
+                        }
+                        return;
+                    }
+
+                    int sampleId = soundPool.load(context, sample.resId, 1);
+                    synchronized (this) {
+                        sample.durationMs = durationMs;
+                        sample.pcm = pcm;
+                        sample.sampleId = sampleId;
+                        if (loadedSampleIds.contains(sampleId)) {
+                            onLoaded(sample);
+                        }
                     }
                 });
     }
 
-    public void close() {
-        if (soundPool != null) {
-            soundPool.release();
+    /** Must be called on our loader thread. */
+    private long getDurationMs(@RawRes int resId) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try (AssetFileDescriptor fd = context.getResources().openRawResourceFd(resId)) {
+            retriever.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+            String duration =
+                    retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (duration != null) {
+                return Long.parseLong(duration);
+            }
+        } catch (IOException | RuntimeException e) {
+            Timber.w(e, "Getting duration of sample %d failed", resId);
+        } finally {
+            retriever.release();
+        }
 
-            // SoundEffect.play() will actually fail after this
-            soundPool = null;
+        return DEFAULT_DURATION_MS;
+    }
+
+    /**
+     * Must be called on our loader thread.
+     *
+     * @return null if we should use the {@link SoundPool} for this sample
+     */
+    @Nullable
+    private short[] getPcm(@RawRes int resId) {
+        if (lowLatencyAudio == null) {
+            return null;
+        }
+
+        try {
+            return PcmDecoder.getPcm(context, resId, lowLatencyAudio.getSampleRate());
+        } catch (IOException e) {
+            Timber.w(e, "Decoding sample %d failed, will use SoundPool for it", resId);
+            return null;
         }
     }
 
-    private SoundEffect getSoundEffectById(int sampleId) {
-        if (soundEffects == null) {
-            throw new IllegalStateException("Sound pool closed, sound effects shut down");
+    private void onLoaded(Sample sample) {
+        Timber.i("Sound effect loaded: <%s>", sample.name);
+        sample.loaded = true;
+
+        SoundEffect playMe = sample.playRequestedWhileLoading;
+        if (playMe != null) {
+            Timber.i("Playing now-loaded sound <%s>", sample.name);
+            sample.playRequestedWhileLoading = null;
+            play(playMe);
+        }
+    }
+
+    /** Called on the dispatcher thread, or when a sample has finished loading. */
+    private synchronized void play(SoundEffect soundEffect) {
+        if (soundEffect.released) {
+            // Released while in the queue
+            return;
+        }
+
+        Sample sample = soundEffect.sample;
+        if (!sample.loaded) {
+            Timber.w("Sound <%s> not loaded yet, will play when done", sample.name);
+            sample.playRequestedWhileLoading = soundEffect;
+            return;
+        }
+
+        SoundMixer.Voice voice =
+                mixer.allocate(
+                        sample,
+                        soundEffect.priority,
+                        soundEffect.minRetriggerMs,
+                        sample.durationMs,
+                        SystemClock.uptimeMillis());
+        if (voice == null) {
+            // Coalesced with a recent play, or drowned out by more important sounds
+            return;
+        }
+
+        if (voice.streamId != 0) {
+            // Steal this voice
+            soundPool.stop(voice.streamId);
+            voice.streamId = 0;
         }
 
-        for (SoundEffect soundEffect : soundEffects) {
-            if (soundEffect.sampleId == sampleId) {
-                return soundEffect;
+        float volume = soundEffect.volume;
+        if (lowLatencyAudio != null) {
+            // This replaces any PCM playing on this voice, silencing it if we have no PCM. We are
+            // synchronized, so we're the only producer for the queue inside.
+            lowLatencyAudio.play(voice.index, sample.pcm, volume);
+            if (sample.pcm != null) {
+                return;
             }
         }
 
-        throw new NoSuchElementException("Sample id " + sampleId + " not found");
+        voice.streamId =
+                soundPool.play(sample.sampleId, volume, volume, soundEffect.priority, 0, 1);
+        if (voice.streamId == 0) {
+            Timber.w("Playing <%s> sound failed", sample.name);
+            voice.free();
+        }
     }
 
-    /** @param name A free-text name used for logging purposes */
-    public SoundEffect load(Context context, @RawRes int resId, @NonNls String name) {
-        if (soundPool == null || soundEffects == null) {
-            throw new IllegalStateException("Sound pool closed");
+    /**
+     * Low latency audio keeps an audio stream open, which costs battery. Tell us when the app is in
+     * the foreground so that we only do that when somebody is there to hear it.
+     */
+    @MainThread
+    public void setInForeground(boolean inForeground) {
+        if (lowLatencyAudio == null) {
+            return;
         }
 
-        int sampleId = soundPool.load(context, resId, 1);
+        if (inForeground) {
+            lowLatencyAudio.start();
+        } else {
+            lowLatencyAudio.stop();
+        }
+    }
+
+    /** Unload all samples nobody has a handle to. They will be reloaded on demand. */
+    public synchronized void trimUnused() {
+        List<String> unloaded = new ArrayList<>();
+        for (Sample sample : samplesByResId.values()) {
+            if (sample.refCount > 0 || !sample.loaded) {
+                continue;
+            }
+
+            if (sample.pcm == null) {
+                soundPool.unload(sample.sampleId);
+                loadedSampleIds.remove(sample.sampleId);
+            }
+            sample.sampleId = 0;
+            sample.loaded = false;
+            sample.pcm = null;
+            unloaded.add(sample.name);
+        }
 
-        SoundEffect soundEffect = new SoundEffect(name, sampleId);
-        soundEffects.add(soundEffect);
-        return soundEffect;
+        Timber.i("Unloaded unused sound effects: %s", unloaded);
     }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import androidx.annotation.RawRes;
+import androidx.annotation.WorkerThread;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * Decodes sound effects into mono 16 bit PCM at the rate of the audio output.
+ *
+ * <p>Decoding is slow, so decoded samples are cached in the app's cache directory. The cache is
+ * keyed by resource name, app version and sample rate, so upgrades and new audio hardware get fresh
+ * samples.
+ */
+class PcmDecoder {
+    @NonNls private static final String CACHE_DIR_NAME = "pcm";
+
+    private static final long TIMEOUT_US = 10_000;
+
+    private PcmDecoder() {
+        // Not intended to be instantiated
+    }
+
+    /** Get a sound effect as PCM, from the cache if possible. */
+    @WorkerThread
+    static short[] getPcm(Context context, @RawRes int resId, int sampleRate) throws IOException {
+        String name = context.getResources().getResourceEntryName(resId);
+        File cacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        @NonNls String fileName = name + "-" + BuildConfig.VERSION_CODE + "-" + sampleRate + ".pcm";
+        File cacheFile = new File(cacheDir, fileName);
+
+        if (cacheFile.exists()) {
+            try {
+                return fromBytes(readFully(cacheFile));
+            } catch (IOException e) {
+                Timber.w(e, "Reading cached PCM failed, decoding again: %s", cacheFile);
+            }
+        }
+
+        short[] pcm = decode(context, resId, sampleRate);
+
+        // Stale versions of this sample only take up space
+        File[] stale = cacheDir.listFiles((dir, staleName) -> staleName.startsWith(name + "-"));
+        if (stale != null) {
+            for (File file : stale) {
+                if (!file.delete()) {
+                    Timber.w("Failed to delete stale PCM cache file: %s", file);
+                }
+            }
+        }
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            Timber.w("Failed to create PCM cache directory: %s", cacheDir);
+            return pcm;
+        }
+        // Write to a temporary file first, so that dying mid-write can't leave a truncated sample
+        // behind for the next run to find
+        File tempFile = new File(cacheDir, fileName + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(toBytes(pcm));
+        } catch (IOException e) {
+            Timber.w(e, "Caching PCM failed: %s", cacheFile);
+            return pcm;
+        }
+        if (!tempFile.renameTo(cacheFile)) {
+            Timber.w("Failed to rename PCM cache file into place: %s", cacheFile);
+            if (!tempFile.delete()) {
+                Timber.w("Failed to delete temporary PCM cache file: %s", tempFile);
+            }
+        }
+
+        return pcm;
+    }
+
+    private static short[] decode(Context context, @RawRes int resId, int sampleRate)
+            throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try (AssetFileDescriptor fd = context.getResources().openRawResourceFd(resId)) {
+            extractor.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+            if (extractor.getTrackCount() < 1) {
+                throw new IOException("No tracks in sound effect: " + resId);
+            }
+            extractor.selectTrack(0);
+            MediaFormat format = extractor.getTrackFormat(0);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime == null) {
+                throw new IOException("Unknown sound effect format: " + format);
+            }
+
+            codec = MediaCodec.createDecoderByType(mime);
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            ShortBuffer decoded = ShortBuffer.allocate(64 * 1024);
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            while (true) {
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inputIndex);
+                        assert input != null;
+                        int size = extractor.readSampleData(input, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(
+                                    inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(
+                                    inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    format = codec.getOutputFormat();
+                    continue;
+                }
+                if (outputIndex < 0) {
+                    continue;
+                }
+
+                ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                assert output != null;
+                output.position(info.offset);
+                output.limit(info.offset + info.size);
+                ShortBuffer samples = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                if (decoded.remaining() < samples.remaining()) {
+                    ShortBuffer grown =
+                            ShortBuffer.allocate(2 * (decoded.capacity() + samples.remaining()));
+                    decoded.flip();
+                    grown.put(decoded);
+                    decoded = grown;
+                }
+                decoded.put(samples);
+                codec.releaseOutputBuffer(outputIndex, false);
+
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                    break;
+                }
+            }
+
+            short[] interleaved = new short[decoded.position()];
+            decoded.flip();
+            decoded.get(interleaved);
+
+            short[] mono =
+                    PcmMixer.toMono(interleaved, format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            return PcmMixer.resample(
+                    mono, format.getInteger(MediaFormat.KEY_SAMPLE_RATE), sampleRate);
+        } catch (IllegalStateException e) {
+            // MediaCodec reports most of its problems like this
+            throw new IOException("Decoding sound effect failed: " + resId, e);
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] bytes = new byte[(int) file.length()];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    private static byte[] toBytes(short[] pcm) {
+        ByteBuffer bytes = ByteBuffer.allocate(pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asShortBuffer().put(pcm);
+        return bytes.array();
+    }
+
+    private static short[] fromBytes(byte[] bytes) {
+        short[] pcm = new short[bytes.length / 2];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(pcm);
+        return pcm;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import androidx.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Mixes mono 16 bit PCM sound effects into one output stream.
+ *
+ * <p>Which effect plays on which voice is decided by {@link SoundMixer}, starting an effect on a
+ * busy voice replaces whatever was playing there.
+ *
+ * <p>Not thread safe, all calls must come from the audio output thread.
+ */
+class PcmMixer {
+    private static class Voice {
+        @Nullable private short[] samples;
+        private int position;
+        private int volume;
+    }
+
+    /** Volumes are fixed point with this many fractional bits. */
+    private static final int VOLUME_SHIFT = 12;
+
+    private final Voice[] voices;
+
+    /** Mixing happens in here, to get clipping right. */
+    private int[] accumulator = new int[0];
+
+    PcmMixer(int voiceCount) {
+        voices = new Voice[voiceCount];
+        for (int i = 0; i < voiceCount; i++) {
+            voices[i] = new Voice();
+        }
+    }
+
+    /**
+     * Start playing samples on a voice, replacing anything already playing there.
+     *
+     * @param samples Null to just stop the voice
+     */
+    void start(int voiceIndex, @Nullable short[] samples, float volume) {
+        Voice voice = voices[voiceIndex];
+        voice.samples = samples;
+        voice.position = 0;
+        voice.volume = Math.round(volume * (1 << VOLUME_SHIFT));
+    }
+
+    /** Stop all voices. */
+    void stopAll() {
+        for (Voice voice : voices) {
+            voice.samples = null;
+        }
+    }
+
+    /**
+     * Fill the output buffer with the next frames of all playing voices.
+     *
+     * @return false if nothing was playing, in which case the buffer is just silence
+     */
+    boolean mix(short[] out) {
+        if (accumulator.length < out.length) {
+            accumulator = new int[out.length];
+        } else {
+            Arrays.fill(accumulator, 0, out.length, 0);
+        }
+
+        boolean anythingPlaying = false;
+        for (Voice voice : voices) {
+            short[] samples = voice.samples;
+            if (samples == null) {
+                continue;
+            }
+            anythingPlaying = true;
+
+            int count = Math.min(out.length, samples.length - voice.position);
+            for (int i = 0; i < count; i++) {
+                accumulator[i] += (samples[voice.position + i] * voice.volume) >> VOLUME_SHIFT;
+            }
+
+            voice.position += count;
+            if (voice.position >= samples.length) {
+                // Done
+                voice.samples = null;
+            }
+        }
+
+        for (int i = 0; i < out.length; i++) {
+            int sample = accumulator[i];
+            if (sample > Short.MAX_VALUE) {
+                sample = Short.MAX_VALUE;
+            } else if (sample < Short.MIN_VALUE) {
+                sample = Short.MIN_VALUE;
+            }
+            out[i] = (short) sample;
+        }
+
+        return anythingPlaying;
+    }
+
+    /** Average interleaved channels into one. */
+    static short[] toMono(short[] interleaved, int channelCount) {
+        if (channelCount == 1) {
+            return interleaved;
+        }
+
+        short[] mono = new short[interleaved.length / channelCount];
+        for (int frame = 0; frame < mono.length; frame++) {
+            int sum = 0;
+            for (int channel = 0; channel < channelCount; channel++) {
+                sum += interleaved[frame * channelCount + channel];
+            }
+            mono[frame] = (short) (sum / channelCount);
+        }
+        return mono;
+    }
+
+    /** Linear interpolation resampling, good enough for short sound effects. */
+    static short[] resample(short[] samples, int fromRate, int toRate) {
+        if (fromRate == toRate || samples.length == 0) {
+            return samples;
+        }
+
+        int length = (int) ((long) samples.length * toRate / fromRate);
+        short[] resampled = new short[length];
+        double step = fromRate / (double) toRate;
+        for (int i = 0; i < length; i++) {
+            double position = i * step;
+            int before = (int) position;
+            int after = Math.min(before + 1, samples.length - 1);
+            double fraction = position - before;
+            resampled[i] =
+                    (short)
+                            Math.round(
+                                    samples[before] * (1 - fraction) + samples[after] * fraction);
+        }
+        return resampled;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import androidx.annotation.DrawableRes;
+
+/** Decodes bitmap resources at about the size we need them, rather than at full resolution. */
+public final class SampledBitmaps {
+    private SampledBitmaps() {
+        // Prevent us from being instantiated
+    }
+
+    /**
+     * Decode a bitmap resource, skipping pixels we'd just throw away when scaling down anyway.
+     *
+     * <p>The result is at least as large as requested in both dimensions, unless the source image
+     * is smaller than that. Density scaling is disabled, the caller is expected to scale the result
+     * to fit.
+     */
+    public static Bitmap decodeResource(
+            Resources resources, @DrawableRes int resId, int widthPixels, int heightPixels) {
+        return decodeResource(
+                resources, resId, getSampleSize(resources, resId, widthPixels, heightPixels));
+    }
+
+    /** Decode a bitmap resource at 1/sampleSize of its original size, ignoring density. */
+    public static Bitmap decodeResource(
+            Resources resources, @DrawableRes int resId, int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeResource(resources, resId, options);
+        if (decoded == null) {
+            throw new RuntimeException(
+                    "Failed to decode image: " + resources.getResourceEntryName(resId));
+        }
+
+        return decoded;
+    }
+
+    /**
+     * Find the sample size to decode a resource with to get at least the given size. Only reads the
+     * image header.
+     */
+    public static int getSampleSize(
+            Resources resources, @DrawableRes int resId, int widthPixels, int heightPixels) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, resId, options);
+
+        return getSampleSize(options.outWidth, options.outHeight, widthPixels, heightPixels);
+    }
+
+    /** The largest power of two we can divide the source size by and still cover the target. */
+    static int getSampleSize(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= targetWidth
+                && sourceHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
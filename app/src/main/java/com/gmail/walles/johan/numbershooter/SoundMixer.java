@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import androidx.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides which sound effects get to play when more are requested than we have voices for.
+ *
+ * <p>Each request comes with a priority. If all voices are busy, the lowest priority voice gets
+ * stolen, provided it isn't more important than the new request. Ties go to the oldest voice.
+ *
+ * <p>Requests for an effect that was started less than its minimum retrigger interval ago are
+ * dropped. This coalesces bursts, like several challenges being shot down in the same frame, into
+ * one sound.
+ *
+ * <p>This class knows nothing about how sounds are actually played, that's up to the caller.
+ */
+class SoundMixer {
+    /** Don't play the same effect more than once per frame. */
+    static final long DEFAULT_MIN_RETRIGGER_MS = 16;
+
+    /**
+     * For effects that can be triggered in quick bursts, like key clicks and shots. Faster than
+     * anybody types, but long enough that a burst doesn't use up all voices.
+     */
+    static final long RAPID_FIRE_MIN_RETRIGGER_MS = 40;
+
+    static class Voice {
+        /** This voice's position among all voices, 0 and up. */
+        final int index;
+
+        /** The stream playing on this voice, 0 if none. */
+        int streamId;
+
+        private int priority;
+        private long startedAtMs;
+        private long endsAtMs;
+
+        private Voice(int index) {
+            this.index = index;
+        }
+
+        private boolean isFreeAt(long nowMs) {
+            return nowMs >= endsAtMs;
+        }
+
+        /** Call if playing on this voice failed. */
+        void free() {
+            streamId = 0;
+            endsAtMs = 0;
+        }
+    }
+
+    private final Voice[] voices;
+    private final Map<Object, Long> lastStartedMs = new HashMap<>();
+
+    SoundMixer(int voiceCount) {
+        voices = new Voice[voiceCount];
+        for (int i = 0; i < voiceCount; i++) {
+            voices[i] = new Voice(i);
+        }
+    }
+
+    /**
+     * Find a voice to play an effect on.
+     *
+     * <p>If the returned voice has a non-zero {@link Voice#streamId}, that stream must be stopped
+     * before playing the new effect. Then set the stream ID to the one of the new effect.
+     *
+     * @param effect Identifies the effect, effects are equal if their identities are
+     * @param durationMs How long the effect plays
+     * @return null if this effect should not be played
+     */
+    @Nullable
+    Voice allocate(Object effect, int priority, long minRetriggerMs, long durationMs, long nowMs) {
+        Long lastStarted = lastStartedMs.get(effect);
+        if (lastStarted != null && nowMs - lastStarted < minRetriggerMs) {
+            // Coalesce with the previous trigger
+            return null;
+        }
+
+        Voice victim = null;
+        for (Voice voice : voices) {
+            if (voice.isFreeAt(nowMs)) {
+                victim = voice;
+                break;
+            }
+
+            if (voice.priority > priority) {
+                // Never steal a more important voice
+                continue;
+            }
+
+            if (victim == null
+                    || voice.priority < victim.priority
+                    || (voice.priority == victim.priority
+                            && voice.startedAtMs < victim.startedAtMs)) {
+                victim = voice;
+            }
+        }
+
+        if (victim == null) {
+            // Everything playing is more important than this
+            return null;
+        }
+
+        if (victim.isFreeAt(nowMs)) {
+            // Whatever was playing here is done already
+            victim.streamId = 0;
+        }
+        victim.priority = priority;
+        victim.startedAtMs = nowMs;
+        victim.endsAtMs = nowMs + durationMs;
+        lastStartedMs.put(effect, nowMs);
+        return victim;
+    }
+
+    /** Count voices that are playing at the given time. */
+    int countBusy(long nowMs) {
+        int busy = 0;
+        for (Voice voice : voices) {
+            if (!voice.isFreeAt(nowMs)) {
+                busy++;
+            }
+        }
+        return busy;
+    }
+}
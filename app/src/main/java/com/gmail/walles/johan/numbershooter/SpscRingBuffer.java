@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import androidx.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free fixed size queue with exactly one producer thread and one consumer thread.
+ *
+ * <p>Neither {@link #offer} nor {@link #poll} ever blocks. Producer and consumer each own one of
+ * the two positions, and publish updates to it using ordered writes. That way neither side ever
+ * sees a slot before it has been completely written or read.
+ */
+class SpscRingBuffer<T> {
+    private final Object[] slots;
+    private final int mask;
+
+    /** Next position to read from, only written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Next position to write to, only written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** @param capacity Must be a power of two */
+    SpscRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        slots = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Producer thread only.
+     *
+     * @return false if the buffer was full and the element was dropped
+     */
+    boolean offer(T element) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() >= slots.length) {
+            return false;
+        }
+
+        slots[(int) (currentTail & mask)] = element;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Consumer thread only.
+     *
+     * @return null if the buffer was empty
+     */
+    @Nullable
+    T poll() {
+        long currentHead = head.get();
+        if (currentHead >= tail.get()) {
+            return null;
+        }
+
+        int index = (int) (currentHead & mask);
+        @SuppressWarnings("unchecked")
+        T element = (T) slots[index];
+
+        // Don't keep references to consumed elements
+        slots[index] = null;
+
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * Records how long into the app's life each startup milestone was reached.
+ *
+ * <p>Times are counted from when this class was first used, which is early in {@link
+ * NumbervadersApp#onCreate()}. Only the first time each milestone is reached counts. Reaching
+ * {@link #INTERACTIVE} logs all milestones.
+ *
+ * <p>For measuring from the outside, each milestone also shows up as a "startup:&lt;milestone&gt;"
+ * section in system traces, and {@link #INTERACTIVE} is where the launch screen reports itself
+ * fully drawn.
+ */
+public final class StartupTrace {
+    @NonNls public static final String APP_CREATED = "app-created";
+    @NonNls public static final String FIRST_FRAME = "first-frame";
+    @NonNls public static final String INTERACTIVE = "interactive";
+
+    private static final long START_MS = SystemClock.uptimeMillis();
+
+    private static final Map<String, Long> milestones = new LinkedHashMap<>();
+
+    private StartupTrace() {
+        // Prevent us from being instantiated
+    }
+
+    /** Touch this class, starting the clock. */
+    public static void begin() {
+        // This method intentionally left blank, loading the class is what starts the clock
+    }
+
+    /** @return true if this was the first time we reached this milestone */
+    public static synchronized boolean mark(@NonNls String milestone) {
+        if (milestones.containsKey(milestone)) {
+            return false;
+        }
+
+        milestones.put(milestone, SystemClock.uptimeMillis() - START_MS);
+
+        // An empty section marks the moment in Perfetto and systrace
+        Trace.beginSection("startup:" + milestone);
+        Trace.endSection();
+
+        if (INTERACTIVE.equals(milestone)) {
+            Timber.i("Startup milestones: %s", milestones);
+        }
+        return true;
+    }
+}
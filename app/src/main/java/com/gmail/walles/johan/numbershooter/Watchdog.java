@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import android.app.Application;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.StrictMode;
+import android.util.Log;
+import android.view.Choreographer;
+import androidx.annotation.MainThread;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * Debug builds only: Catches main thread disk access, leaks and slow frames.
+ *
+ * <p>Slow frames are only watched for while {@link GameView} animates, see {@link
+ * #startWatchingFrames()}.
+ *
+ * <p>Everything caught is logged, appended to a log file and can be viewed in {@link
+ * com.gmail.walles.johan.numbershooter.activities.WatchdogActivity}.
+ */
+public class Watchdog implements Choreographer.FrameCallback {
+    @NonNls private static final String LOG_FILE_NAME = "watchdog.log";
+
+    /** When the log file grows beyond this size, we start over. */
+    private static final long MAX_LOG_BYTES = 256 * 1024;
+
+    private static final long FRAME_BUDGET_NANOS = 1_000_000_000L / 60;
+
+    /** Report frames where we dropped at least this many frames. */
+    private static final long REPORT_DROPPED_FRAMES = 3;
+
+    public interface ReportListener {
+        @MainThread
+        void onReportRead(String report);
+    }
+
+    private final File logFile;
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor(
+                    runnable -> {
+                        @NonNls String name = "Watchdog";
+                        return new Thread(runnable, name);
+                    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private boolean watchingFrames;
+
+    /** 0 means we haven't seen any frame since we started watching. */
+    private long lastFrameTimeNanos;
+
+    private Watchdog(File logFile) {
+        this.logFile = logFile;
+    }
+
+    /** Set up StrictMode and start watching frames. Call from the main thread. */
+    @MainThread
+    static Watchdog install(Application application) {
+        Watchdog watchdog = new Watchdog(new File(application.getFilesDir(), LOG_FILE_NAME));
+
+        StrictMode.ThreadPolicy.Builder threadPolicy =
+                new StrictMode.ThreadPolicy.Builder().detectAll().penaltyLog();
+        StrictMode.VmPolicy.Builder vmPolicy =
+                new StrictMode.VmPolicy.Builder().detectAll().penaltyLog();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            // Before Android 9 violations only go to the system log
+            threadPolicy.penaltyListener(
+                    watchdog.writer,
+                    violation ->
+                            watchdog.report("Thread policy", Log.getStackTraceString(violation)));
+            vmPolicy.penaltyListener(
+                    watchdog.writer,
+                    violation -> watchdog.report("VM policy", Log.getStackTraceString(violation)));
+        }
+        StrictMode.setThreadPolicy(threadPolicy.build());
+        StrictMode.setVmPolicy(vmPolicy.build());
+
+        return watchdog;
+    }
+
+    /**
+     * Start watching for slow frames. Only call this while something is requesting a frame every
+     * frame, otherwise we'd report the gaps between frames as slow frames. Watching also keeps
+     * frame callbacks coming, so we shouldn't do it while nothing is animating.
+     */
+    @MainThread
+    public void startWatchingFrames() {
+        if (watchingFrames) {
+            return;
+        }
+
+        watchingFrames = true;
+        lastFrameTimeNanos = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @MainThread
+    public void stopWatchingFrames() {
+        watchingFrames = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!watchingFrames) {
+            return;
+        }
+
+        if (lastFrameTimeNanos != 0) {
+            long droppedFrames = (frameTimeNanos - lastFrameTimeNanos) / FRAME_BUDGET_NANOS - 1;
+            if (droppedFrames >= REPORT_DROPPED_FRAMES) {
+                long millis = (frameTimeNanos - lastFrameTimeNanos) / 1_000_000;
+                report("Slow frame", droppedFrames + " frames dropped, " + millis + "ms");
+            }
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /** Log a problem and append it to our log file. Can be called from any thread. */
+    void report(@NonNls String kind, @NonNls String details) {
+        Timber.w("Watchdog: %s: %s", kind, details);
+
+        long timestamp = System.currentTimeMillis();
+        writer.execute(() -> append(timestamp, kind, details));
+    }
+
+    private void append(long timestamp, String kind, String details) {
+        if (logFile.length() > MAX_LOG_BYTES && !logFile.delete()) {
+            Timber.w("Failed to delete %s", logFile);
+        }
+
+        @NonNls SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        try (Writer out =
+                new OutputStreamWriter(
+                        new FileOutputStream(logFile, true), StandardCharsets.UTF_8)) {
+            out.write(format.format(new Date(timestamp)));
+            out.write(" ");
+            out.write(kind);
+            out.write(": ");
+            out.write(details);
+            out.write("\n\n");
+        } catch (IOException e) {
+            Timber.e(e, "Writing watchdog log failed");
+        }
+    }
+
+    /** Read our log file in the background, and pass the contents to the listener. */
+    public void readReport(ReportListener listener) {
+        writer.execute(
+                () -> {
+                    String report;
+                    try {
+                        report = readLogFile();
+                    } catch (IOException e) {
+                        report = Log.getStackTraceString(e);
+                    }
+
+                    String finalReport = report;
+                    mainHandler.post(() -> listener.onReportRead(finalReport));
+                });
+    }
+
+    private String readLogFile() throws IOException {
+        if (!logFile.exists()) {
+            return "";
+        }
+
+        byte[] bytes = new byte[(int) logFile.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(logFile))) {
+            in.readFully(bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void clear() {
+        writer.execute(
+                () -> {
+                    if (logFile.exists() && !logFile.delete()) {
+                        Timber.w("Failed to delete %s", logFile);
+                    }
+                });
+    }
+}
@@ -23,14 +23,16 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.view.View;
 import android.widget.TextView;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AlertDialog;
+import com.gmail.walles.johan.numbershooter.BackgroundBitmap;
 import com.gmail.walles.johan.numbershooter.GameType;
 import com.gmail.walles.johan.numbershooter.GameView;
 import com.gmail.walles.johan.numbershooter.KeyboardView;
+import com.gmail.walles.johan.numbershooter.NumbervadersApp;
 import com.gmail.walles.johan.numbershooter.R;
 import com.gmail.walles.johan.numbershooter.model.FallingMaths;
-import com.gmail.walles.johan.numbershooter.playerstate.PlayerStateV3;
 import java.io.IOException;
 import org.jetbrains.annotations.NonNls;
 
@@ -41,6 +43,8 @@ import org.jetbrains.annotations.NonNls;
 public class GameActivity extends MusicActivity {
     @NonNls private static final String GAME_TYPE_EXTRA = "gameType";
     @NonNls private static final String LEVEL_EXTRA = "level";
+    @NonNls private static final String LEVEL_KEY = "level";
+    @NonNls private static final String MODEL_SNAPSHOT_KEY = "modelSnapshot";
 
     public static void start(Context context, GameType gameType, int level) {
         Intent intent = new Intent(context, GameActivity.class);
@@ -57,7 +61,9 @@ public class GameActivity extends MusicActivity {
 
     private final Handler handler = new Handler();
     private GameType gameType;
+    private int level;
     private GameView gameView;
+    private LevelClearedOverlay levelClearedOverlay;
     private final Runnable mHidePart2Runnable =
             new Runnable() {
                 @SuppressLint("InlinedApi")
@@ -104,9 +110,15 @@ public class GameActivity extends MusicActivity {
         super.onCreate(savedInstanceState);
 
         setContentView(R.layout.activity_game);
+        BackgroundBitmap.applyTo(findViewById(R.id.game_root));
 
         gameType = GameType.valueOf(getIntent().getStringExtra(GAME_TYPE_EXTRA));
-        int level = getIntent().getIntExtra(LEVEL_EXTRA, 0);
+        // The intent we were started with is all the system has after process death, so levels
+        // cleared since then are in the saved state
+        level =
+                savedInstanceState == null
+                        ? getIntent().getIntExtra(LEVEL_EXTRA, 0)
+                        : savedInstanceState.getInt(LEVEL_KEY, 0);
         if (level <= 0) {
             throw new RuntimeException("Level not found: " + getIntent());
         }
@@ -114,7 +126,13 @@ public class GameActivity extends MusicActivity {
         mVisible = true;
         mControlsView = findViewById(R.id.fullscreen_content_controls);
         gameView = findViewById(R.id.game);
-        gameView.restart(gameType, level);
+        levelClearedOverlay = new LevelClearedOverlay(this);
+
+        // Pick up where we were if we were recreated, after rotation or after process death
+        startLevel(
+                savedInstanceState == null
+                        ? null
+                        : savedInstanceState.getByteArray(MODEL_SNAPSHOT_KEY));
 
         // Set up the user interaction to manually show or hide the system UI.
         gameView.setOnClickListener(view -> toggle());
@@ -125,7 +143,8 @@ public class GameActivity extends MusicActivity {
                     public void onPlayerDied(Iterable<FallingMaths> failedMaths) {
                         // Update the stored level now, but...
                         try {
-                            PlayerStateV3.fromContext(GameActivity.this).reportFailure(gameType);
+                            NumbervadersApp.getPlayerState(GameActivity.this)
+                                    .reportFailure(gameType);
                         } catch (IOException e) {
                             throw new RuntimeException("Decreasing player level failed", e);
                         }
@@ -138,17 +157,27 @@ public class GameActivity extends MusicActivity {
                     public void onLevelCleared() {
                         // Update the stored level now, but...
                         try {
-                            PlayerStateV3.fromContext(GameActivity.this).reportSuccess(gameType);
+                            NumbervadersApp.getPlayerState(GameActivity.this)
+                                    .reportSuccess(gameType);
                         } catch (IOException e) {
                             throw new RuntimeException("Increasing player level failed", e);
                         }
 
+                        // If we get recreated from here on, it should be into the next level.
+                        // Playing this one again would report it cleared twice.
+                        int clearedLevel = level;
+                        level++;
+
+                        // Set up the next level while the player is busy celebrating
+                        gameView.prefetch(gameType, level);
+
                         // ... wait a bit before telling the player that they succeeded
                         handler.postDelayed(
-                                () -> {
-                                    LevelClearedActivity.start(GameActivity.this, gameType, level);
-                                    finish();
-                                },
+                                () ->
+                                        levelClearedOverlay.show(
+                                                gameType,
+                                                clearedLevel,
+                                                GameActivity.this::startNextLevel),
                                 2000);
                     }
                 });
@@ -157,6 +186,48 @@ public class GameActivity extends MusicActivity {
         keyboard.setOnKeypress(gameView::insertDigit);
     }
 
+    /** @param snapshot Resume this snapshot of the level rather than starting it over */
+    private void startLevel(@Nullable byte[] snapshot) {
+        gameView.restart(gameType, level, snapshot);
+
+        // Have the medals ready in case the player clears this level
+        NumbervadersApp.getMedalsCalculator(this).prepareLatest(this, gameType);
+    }
+
+    /**
+     * Go on to the next level without leaving this activity. {@link #level} was already moved on
+     * when the previous level was cleared.
+     */
+    private void startNextLevel() {
+        startLevel(null);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        gameView.startFrames();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        // Don't keep rendering while we can't be seen
+        gameView.stopFrames();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+
+        outState.putInt(LEVEL_KEY, level);
+
+        byte[] snapshot = gameView.saveSnapshot();
+        if (snapshot != null) {
+            outState.putByteArray(MODEL_SNAPSHOT_KEY, snapshot);
+        }
+    }
+
     private void tellPlayerItDied(Iterable<FallingMaths> failedMaths) {
         FallingMaths lowestAnswer = failedMaths.iterator().next();
         for (FallingMaths failed : failedMaths) {
@@ -213,6 +284,10 @@ public class GameActivity extends MusicActivity {
     protected void onDestroy() {
         super.onDestroy();
 
+        // Delayed callbacks reference this activity, don't let them outlive it
+        handler.removeCallbacksAndMessages(null);
+
+        levelClearedOverlay.close();
         ((GameView) findViewById(R.id.game)).close();
         ((KeyboardView) findViewById(R.id.keyboard)).close();
     }
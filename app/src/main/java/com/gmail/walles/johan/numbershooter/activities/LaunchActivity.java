@@ -24,12 +24,18 @@ import android.text.SpannableString;
 import android.text.style.RelativeSizeSpan;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import androidx.annotation.IdRes;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
+import com.gmail.walles.johan.numbershooter.BackgroundBitmap;
+import com.gmail.walles.johan.numbershooter.BuildConfig;
 import com.gmail.walles.johan.numbershooter.GameType;
+import com.gmail.walles.johan.numbershooter.NumbervadersApp;
 import com.gmail.walles.johan.numbershooter.R;
+import com.gmail.walles.johan.numbershooter.StartupTrace;
 import com.gmail.walles.johan.numbershooter.playerstate.PlayerStateV3;
 import java.io.IOException;
 import java.io.InputStream;
@@ -49,9 +55,18 @@ public class LaunchActivity extends MusicActivity {
     protected void onResume() {
         super.onResume();
 
+        // Loading may still be in progress on a cold start, don't block the first frame on it
+        NumbervadersApp.whenPlayerStateLoaded(this, this::configureButtons);
+    }
+
+    private void configureButtons() {
+        if (isDestroyed()) {
+            return;
+        }
+
         PlayerStateV3 playerState;
         try {
-            playerState = PlayerStateV3.fromContext(this);
+            playerState = NumbervadersApp.getPlayerState(this);
         } catch (IOException e) {
             throw new RuntimeException("Failed to get player state", e);
         }
@@ -63,6 +78,10 @@ public class LaunchActivity extends MusicActivity {
 
         Button medalsButton = findViewById(R.id.medalsButton);
         medalsButton.setOnClickListener(v -> MedalsActivity.start(LaunchActivity.this));
+
+        if (StartupTrace.mark(StartupTrace.INTERACTIVE)) {
+            reportFullyDrawn();
+        }
     }
 
     private void configureButton(
@@ -86,6 +105,7 @@ public class LaunchActivity extends MusicActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getDelegate().getMenuInflater().inflate(R.menu.options_menu, menu);
+        menu.findItem(R.id.watchdog_report).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -104,6 +124,11 @@ public class LaunchActivity extends MusicActivity {
             return true;
         }
 
+        if (item.getItemId() == R.id.watchdog_report) {
+            WatchdogActivity.start(this);
+            return true;
+        }
+
         return super.onOptionsItemSelected(item);
     }
 
@@ -134,7 +159,20 @@ public class LaunchActivity extends MusicActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_launch);
+        BackgroundBitmap.applyTo(findViewById(R.id.launch_content));
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
+
+        View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver()
+                .addOnPreDrawListener(
+                        new ViewTreeObserver.OnPreDrawListener() {
+                            @Override
+                            public boolean onPreDraw() {
+                                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                                StartupTrace.mark(StartupTrace.FIRST_FRAME);
+                                return true;
+                            }
+                        });
     }
 }
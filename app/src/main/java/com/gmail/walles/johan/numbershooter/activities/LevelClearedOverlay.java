@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter.activities;
+
+import android.app.Activity;
+import android.graphics.PorterDuff;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.gmail.walles.johan.numbershooter.GameType;
+import com.gmail.walles.johan.numbershooter.Medal;
+import com.gmail.walles.johan.numbershooter.MedalsAdapter;
+import com.gmail.walles.johan.numbershooter.NumbervadersApp;
+import com.gmail.walles.johan.numbershooter.ObjectiveSoundPool;
+import com.gmail.walles.johan.numbershooter.R;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Shown on top of the game when a level has been cleared, lists any new medals and offers to go to
+ * the next level.
+ *
+ * <p>This used to be an activity of its own. Being an overlay means going to the next level doesn't
+ * have to tear down and set up a new game screen.
+ */
+class LevelClearedOverlay {
+    private final Activity activity;
+    private final View overlay;
+    private final TextView textView;
+    private final Button nextLevelButton;
+    private final RecyclerView medalsList;
+    private final MedalsAdapter medalsAdapter;
+
+    private final ObjectiveSoundPool.SoundEffect tada;
+
+    /** Increased on every {@link #show}, so that late medals for earlier levels are ignored. */
+    private int generation;
+
+    /** Must be called after the activity's content view has been set. */
+    LevelClearedOverlay(Activity activity) {
+        this.activity = activity;
+
+        overlay = activity.findViewById(R.id.level_cleared_overlay);
+        textView = activity.findViewById(R.id.level_cleared_text);
+        nextLevelButton = activity.findViewById(R.id.next_level_button);
+
+        medalsList = activity.findViewById(R.id.medalsList);
+        int medalSize = 2 * activity.getResources().getDimensionPixelSize(R.dimen.big_text_size);
+        medalsList.setLayoutManager(new LinearLayoutManager(activity));
+        medalsAdapter = new MedalsAdapter(activity, medalSize, Collections.emptyList());
+        medalsList.setAdapter(medalsAdapter);
+
+        tada = NumbervadersApp.getSoundPool(activity).get(R.raw.medal_earned_tada).setPriority(3);
+    }
+
+    /** @param onNextLevel Called when the player wants to go on to the next level */
+    void show(GameType gameType, int clearedLevel, Runnable onNextLevel) {
+        generation++;
+
+        textView.setText(activity.getString(R.string.level_n_cleared, clearedLevel));
+        nextLevelButton.setText(activity.getString(R.string.level_n, clearedLevel + 1));
+        nextLevelButton.setOnClickListener(
+                v -> {
+                    hide();
+                    onNextLevel.run();
+                });
+
+        medalsAdapter.setMedals(Collections.emptyList());
+        medalsList.setVisibility(View.INVISIBLE);
+
+        overlay.setVisibility(View.VISIBLE);
+
+        listMedals(gameType, generation);
+    }
+
+    private void hide() {
+        generation++;
+        overlay.setVisibility(View.GONE);
+    }
+
+    /** Call from the activity's onDestroy(). */
+    void close() {
+        tada.release();
+    }
+
+    private void listMedals(GameType gameType, int showGeneration) {
+        NumbervadersApp.getMedalsCalculator(activity)
+                .awardLatest(
+                        activity,
+                        gameType,
+                        medalsEarned -> {
+                            if (activity.isDestroyed() || showGeneration != generation) {
+                                return;
+                            }
+
+                            /*
+                            // NOTE: Test code, re-enable to get some medals after finishing a level
+                            medalsEarned = new ArrayList<>(medalsEarned);
+                            medalsEarned.add(Medal.percentDone(GameType.ADDITION, 100, Medal.Flavor.GOLD));
+                            medalsEarned.add(Medal.numberDone(GameType.ADDITION, 10, Medal.Flavor.SILVER));
+                            medalsEarned.add(Medal.waysOfCounting(1, Medal.Flavor.BRONZE));
+                            */
+
+                            if (medalsEarned.isEmpty()) {
+                                return;
+                            }
+
+                            medalsList.setVisibility(View.VISIBLE);
+                            medalsAdapter.setMedals(medalsEarned);
+
+                            showEarnedMedalDialog(medalsEarned.iterator());
+                        });
+    }
+
+    private void showEarnedMedalDialog(Iterator<Medal> medalsIter) {
+        if (!medalsIter.hasNext()) {
+            return;
+        }
+        Medal medal = medalsIter.next();
+
+        tada.play();
+
+        Drawable medalDrawable = activity.getResources().getDrawable(R.drawable.medal, null);
+        medalDrawable.setColorFilter(medal.flavor.getColor(), PorterDuff.Mode.SRC_ATOP);
+
+        new AlertDialog.Builder(activity)
+                .setMessage(medal.getDescription(activity.getResources()))
+                .setNeutralButton(
+                        R.string.ok,
+                        (dialog, which) -> {
+                            dialog.dismiss();
+                            showEarnedMedalDialog(medalsIter);
+                        })
+                .setTitle(R.string.you_received_a_medal)
+                .setIcon(medalDrawable)
+                .show();
+    }
+}
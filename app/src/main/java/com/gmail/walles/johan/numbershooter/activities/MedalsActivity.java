@@ -24,13 +24,11 @@ import android.widget.TextView;
 import androidx.appcompat.app.ActionBar;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import com.gmail.walles.johan.numbershooter.Medal;
-import com.gmail.walles.johan.numbershooter.Medals;
+import com.gmail.walles.johan.numbershooter.BackgroundBitmap;
 import com.gmail.walles.johan.numbershooter.MedalsAdapter;
+import com.gmail.walles.johan.numbershooter.NumbervadersApp;
 import com.gmail.walles.johan.numbershooter.R;
-import com.gmail.walles.johan.numbershooter.playerstate.PlayerStateV3;
-import java.io.IOException;
-import java.util.List;
+import java.util.Collections;
 
 public class MedalsActivity extends MusicActivity {
     public static void start(Context context) {
@@ -42,36 +40,38 @@ public class MedalsActivity extends MusicActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_medals);
-
-        PlayerStateV3 playerState;
-        try {
-            playerState = PlayerStateV3.fromContext(this);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to get player state", e);
-        }
-
-        List<Medal> medals = Medals.get(getResources(), playerState);
-        if (medals.isEmpty()) {
-            TextView textView = findViewById(R.id.textView);
-            textView.setText(R.string.no_medals_yet);
-        }
-
-        /*
-        // NOTE: Re-enable these to test various kinds of medals
-        medals.add(0, new Medal(Medal.Flavor.GOLD, "Test: Gold medal"));
-        medals.add(
-                1,
-                new Medal(
-                        Medal.Flavor.SILVER,
-                        "Test: Silver medal with a lot of text so that the text in the description has to wrap and fill many lines"));
-        medals.add(2, new Medal(Medal.Flavor.BRONZE, "Test: Bronze medal"));
-        */
+        BackgroundBitmap.applyTo(findViewById(R.id.medals_root));
 
         int medalSize = 2 * getResources().getDimensionPixelSize(R.dimen.big_text_size);
 
         RecyclerView medalsList = findViewById(R.id.medalsList);
         medalsList.setLayoutManager(new LinearLayoutManager(this));
-        medalsList.setAdapter(new MedalsAdapter(this, medalSize, medals));
+        MedalsAdapter medalsAdapter = new MedalsAdapter(this, medalSize, Collections.emptyList());
+        medalsList.setAdapter(medalsAdapter);
+
+        NumbervadersApp.getMedalsCalculator(this)
+                .getAll(
+                        this,
+                        medals -> {
+                            if (isDestroyed()) {
+                                return;
+                            }
+
+                            if (medals.isEmpty()) {
+                                TextView textView = findViewById(R.id.textView);
+                                textView.setText(R.string.no_medals_yet);
+                            }
+
+                            /*
+                            // NOTE: Re-enable these to test various kinds of medals
+                            medals = new ArrayList<>(medals);
+                            medals.add(0, Medal.percentDone(GameType.MULTIPLICATION, 100, Medal.Flavor.GOLD));
+                            medals.add(1, Medal.numberDone(GameType.SUBTRACTION, 15, Medal.Flavor.SILVER));
+                            medals.add(2, Medal.waysOfCounting(1, Medal.Flavor.BRONZE));
+                            */
+
+                            medalsAdapter.setMedals(medals);
+                        });
 
         // Provide user with a way to go back to the launch screen
         ActionBar actionBar = getSupportActionBar();
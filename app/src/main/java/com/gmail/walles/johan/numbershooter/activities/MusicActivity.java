@@ -17,59 +17,26 @@
 package com.gmail.walles.johan.numbershooter.activities;
 
 import android.annotation.SuppressLint;
-import android.media.MediaPlayer;
-import android.os.Bundle;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
-import com.gmail.walles.johan.numbershooter.R;
+import com.gmail.walles.johan.numbershooter.NumbervadersApp;
 
-/** An activity with background music. */
+/**
+ * An activity with background music.
+ *
+ * <p>The music is shared between all activities, see {@link
+ * com.gmail.walles.johan.numbershooter.MusicController}.
+ */
 @SuppressLint("Registered")
 public class MusicActivity extends AppCompatActivity {
-    private MediaPlayer music;
-
-    @Override
-    protected void onCreate(@Nullable Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-
-        music = MediaPlayer.create(this, R.raw.bensound_scifi);
-        setVolumePercent(100);
-        music.setLooping(true);
-    }
-
     @Override
     protected void onStart() {
         super.onStart();
-        music.start();
-    }
-
-    @Override
-    protected void onPause() {
-        super.onPause();
-        music.pause();
-    }
-
-    @Override
-    protected void onResume() {
-        super.onResume();
-        music.start();
+        NumbervadersApp.getMusicController(this).acquire();
     }
 
     @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        music.release();
-    }
-
-    /**
-     * From: https://stackoverflow.com/a/12075910/473672
-     *
-     * @param percent 0-100
-     */
-    private void setVolumePercent(int percent) {
-        final int maxVolume = 100;
-
-        float log1 = (float) (Math.log(maxVolume - percent) / Math.log(maxVolume));
-        music.setVolume(1 - log1, 1 - log1);
+    protected void onStop() {
+        super.onStop();
+        NumbervadersApp.getMusicController(this).release();
     }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.activities;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+import androidx.appcompat.app.ActionBar;
+import androidx.appcompat.app.AppCompatActivity;
+import com.gmail.walles.johan.numbershooter.NumbervadersApp;
+import com.gmail.walles.johan.numbershooter.R;
+import com.gmail.walles.johan.numbershooter.Watchdog;
+
+/** Debug builds only: Shows what the {@link Watchdog} has found. */
+public class WatchdogActivity extends AppCompatActivity {
+    public static void start(Context context) {
+        Intent intent = new Intent(context, WatchdogActivity.class);
+        context.startActivity(intent);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_watchdog);
+
+        ActionBar actionBar = getSupportActionBar();
+        assert actionBar != null;
+        actionBar.setDisplayHomeAsUpEnabled(true);
+        actionBar.setDisplayShowHomeEnabled(true);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        TextView reportView = findViewById(R.id.watchdogReport);
+        Watchdog watchdog = NumbervadersApp.getWatchdog(this);
+        if (watchdog == null) {
+            // Release build
+            reportView.setText(R.string.watchdog_report_empty);
+            return;
+        }
+
+        watchdog.readReport(
+                report -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+
+                    if (report.isEmpty()) {
+                        reportView.setText(R.string.watchdog_report_empty);
+                    } else {
+                        reportView.setText(report);
+                    }
+                });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, R.id.watchdog_clear, Menu.NONE, R.string.watchdog_report_clear);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+
+        if (item.getItemId() == R.id.watchdog_clear) {
+            Watchdog watchdog = NumbervadersApp.getWatchdog(this);
+            if (watchdog != null) {
+                watchdog.clear();
+            }
+
+            TextView reportView = findViewById(R.id.watchdogReport);
+            reportView.setText(R.string.watchdog_report_empty);
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+}
@@ -19,7 +19,11 @@ package com.gmail.walles.johan.numbershooter.model;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import androidx.annotation.Nullable;
 import com.gmail.walles.johan.numbershooter.ObjectiveSoundPool;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 public class Cannon implements GameObject {
     private static final int DEBRIS_COUNT_ON_FAIL = 3;
@@ -28,7 +32,8 @@ public class Cannon implements GameObject {
     private static final int Y = 100;
 
     private String digits = "";
-    private final Paint paint;
+    private final float sizePixels;
+    @Nullable private Paint paint;
     private final Model model;
     private final ObjectiveSoundPool.SoundEffect shotSound;
     private final ObjectiveSoundPool.SoundEffect explosionSound;
@@ -44,10 +49,7 @@ public class Cannon implements GameObject {
         this.shotSound = shotSound;
         this.explosionSound = explosionSound;
 
-        paint = new Paint();
-        paint.setColor(Color.WHITE);
-        paint.setTextSize(sizePixels);
-        paint.setTextAlign(Paint.Align.CENTER);
+        this.sizePixels = sizePixels;
     }
 
     @Override
@@ -61,6 +63,10 @@ public class Cannon implements GameObject {
             return;
         }
 
+        if (paint == null) {
+            paint = TextPaints.create(Color.WHITE, sizePixels);
+        }
+
         //noinspection StringConcatenation
         canvas.drawText("/" + digits + "\\", canvas.getWidth() / 2, canvas.getHeight(), paint);
     }
@@ -78,10 +84,28 @@ public class Cannon implements GameObject {
         return digits;
     }
 
-    public GameObject createShotFor(FallingMaths target) {
+    float getTextSize() {
+        return sizePixels;
+    }
+
+    /** Counterpart of {@link #restoreFrom}. */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(digits);
+        out.writeBoolean(dead);
+    }
+
+    /** Counterpart of {@link #writeTo}. */
+    void restoreFrom(DataInput in) throws IOException {
+        digits = in.readUTF();
+        dead = in.readBoolean();
+    }
+
+    /** @param inputTimeMs When the last digit of the answer was input */
+    public GameObject createShotFor(FallingMaths target, long inputTimeMs) {
         this.shotSound.play();
 
-        Shot shot = new Shot(digits, paint.getTextSize(), (double) X, (double) Y, target);
+        Shot shot =
+                new Shot(digits, sizePixels, (double) X, (double) Y, target, model, inputTimeMs);
         digits = "";
         return shot;
     }
@@ -91,7 +115,7 @@ public class Cannon implements GameObject {
 
         GameObject[] debris = new GameObject[DEBRIS_COUNT_ON_FAIL];
         for (int i = 0; i < DEBRIS_COUNT_ON_FAIL; i++) {
-            debris[i] = new Debris(digits, paint.getTextSize(), (double) X, (double) Y);
+            debris[i] = new Debris(digits, sizePixels, (double) X, (double) Y);
         }
         digits = "";
         return debris;
@@ -102,7 +126,7 @@ public class Cannon implements GameObject {
         explosionSound.play();
 
         for (int i = 0; i < DEBRIS_COUNT_ON_EXPLODE; i++) {
-            model.add(new Debris(text, paint.getTextSize(), (double) X, (double) Y));
+            model.add(new Debris(text, sizePixels, (double) X, (double) Y));
         }
 
         dead = true;
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter.model;
+
+import com.gmail.walles.johan.numbershooter.GameType;
+import java.util.List;
+
+/**
+ * Keeps track of which numbers are done after each level of one game type.
+ *
+ * <p>For commutative game types, 3 is done when both 3*[1-10] and [1-10]*3 are done. For
+ * non-commutative ones, 3 is done when [1-10]/3 are done.
+ *
+ * <p>Tables are computed once per game type, after that all lookups are constant time and don't
+ * allocate anything.
+ */
+public final class CompletionTable {
+    private static final CompletionTable[] TABLES = new CompletionTable[GameType.values().length];
+
+    private final int topLevel;
+
+    /**
+     * Bit N is set if number N is done after having completed level L, indexed by L.
+     *
+     * <p>Index 0 is for when no levels have been completed.
+     */
+    private final int[] doneNumbersPerLevel;
+
+    private CompletionTable(GameType gameType) {
+        if (gameType.topNumber >= Integer.SIZE) {
+            throw new IllegalArgumentException(
+                    "Top number too large for an int bitset: " + gameType.topNumber);
+        }
+
+        MathsFactory mathsFactory = MathsFactory.create(gameType);
+        topLevel = mathsFactory.getTopLevel();
+        doneNumbersPerLevel = new int[topLevel + 1];
+
+        // For commutative game types this is:
+        // x * [1-10]: There are 10 of these
+        // [1-10] * x: There are 10 of these
+        // So it's 20, but one of them is x * x and we count that only once.
+        int doneCount = gameType.isCommutative ? 2 * gameType.topNumber - 1 : gameType.topNumber;
+
+        int[] doneCountsPerNumber = new int[gameType.topNumber + 1];
+        List<MathsFactory.Maths> allMaths = mathsFactory.getMathsUpToLevelInclusive(topLevel);
+        int doneNumbers = 0;
+        for (int level = 1; level <= topLevel; level++) {
+            int first = (level - 1) * MathsFactory.NEW_MATHS_PER_LEVEL;
+            for (MathsFactory.Maths maths :
+                    allMaths.subList(first, first + MathsFactory.NEW_MATHS_PER_LEVEL)) {
+                if (gameType.isCommutative) {
+                    doneNumbers |= count(doneCountsPerNumber, maths.a, doneCount);
+
+                    if (maths.a == maths.b) {
+                        // Don't count 5*5 twice
+                        continue;
+                    }
+                }
+
+                doneNumbers |= count(doneCountsPerNumber, maths.b, doneCount);
+            }
+
+            doneNumbersPerLevel[level] = doneNumbers;
+        }
+    }
+
+    /** Count one more maths for the given number, and return its bit if it is now done. */
+    private static int count(int[] doneCountsPerNumber, int number, int doneCount) {
+        doneCountsPerNumber[number]++;
+        if (doneCountsPerNumber[number] < doneCount) {
+            return 0;
+        }
+
+        return 1 << number;
+    }
+
+    public static CompletionTable get(GameType gameType) {
+        synchronized (TABLES) {
+            CompletionTable table = TABLES[gameType.ordinal()];
+            if (table == null) {
+                table = new CompletionTable(gameType);
+                TABLES[gameType.ordinal()] = table;
+            }
+
+            return table;
+        }
+    }
+
+    /** The last level where we still get new challenges. */
+    public int getTopLevel() {
+        return topLevel;
+    }
+
+    /**
+     * Which numbers are done after having completed the given level?
+     *
+     * @return A bitset where bit N is set if number N is done
+     */
+    public int getDoneNumbers(int completedLevel) {
+        if (completedLevel <= 0) {
+            return 0;
+        }
+        if (completedLevel > topLevel) {
+            completedLevel = topLevel;
+        }
+
+        return doneNumbersPerLevel[completedLevel];
+    }
+
+    /** @return The highest done number after having completed the given level, or 0 if none */
+    public int getMaxDoneNumber(int completedLevel) {
+        int doneNumbers = getDoneNumbers(completedLevel);
+        if (doneNumbers == 0) {
+            return 0;
+        }
+
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(doneNumbers);
+    }
+}
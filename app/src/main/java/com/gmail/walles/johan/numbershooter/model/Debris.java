@@ -19,6 +19,10 @@ package com.gmail.walles.johan.numbershooter.model;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import androidx.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
 class Debris implements GameObject {
@@ -35,7 +39,8 @@ class Debris implements GameObject {
 
     private String text;
 
-    private final Paint paint;
+    private final float sizePixels;
+    @Nullable private Paint paint;
 
     public Debris(String text, float sizePixels, double x, double y) {
         this.text = text;
@@ -57,10 +62,32 @@ class Debris implements GameObject {
                             dy, angle));
         }
 
-        paint = new Paint();
-        paint.setColor(Color.RED);
-        paint.setTextSize(sizePixels);
-        paint.setTextAlign(Paint.Align.CENTER);
+        this.sizePixels = sizePixels;
+    }
+
+    /** Counterpart of {@link #readFrom}. */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(text);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(initialY);
+        out.writeDouble(dx);
+        out.writeDouble(dy);
+    }
+
+    /** Counterpart of {@link #writeTo}. */
+    static Debris readFrom(DataInput in, float sizePixels) throws IOException {
+        String text = in.readUTF();
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double initialY = in.readDouble();
+
+        // The random direction picked here gets replaced by the saved one
+        Debris debris = new Debris(text, sizePixels, x, initialY);
+        debris.y = y;
+        debris.dx = in.readDouble();
+        debris.dy = in.readDouble();
+        return debris;
     }
 
     @Override
@@ -77,6 +104,10 @@ class Debris implements GameObject {
         float screenX = (float) (x * coordinatesToScreenFactor + xOffset);
         float screenY = (float) (y * coordinatesToScreenFactor);
 
+        if (paint == null) {
+            paint = TextPaints.create(Color.RED, sizePixels);
+        }
+
         canvas.drawText(text, screenX, screenY, paint);
     }
 
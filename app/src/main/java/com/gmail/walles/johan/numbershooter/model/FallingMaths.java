@@ -19,7 +19,11 @@ package com.gmail.walles.johan.numbershooter.model;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import androidx.annotation.Nullable;
 import com.gmail.walles.johan.numbershooter.ObjectiveSoundPool;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 import org.jetbrains.annotations.NonNls;
 
@@ -31,6 +35,7 @@ public class FallingMaths implements GameObject {
 
     private static final double BASE_PERCENT_PER_MS = 100.0 / MS_TO_BOTTOM;
 
+    private final double speedupFactor;
     private final double percentPerMs;
 
     private final Model model;
@@ -38,36 +43,85 @@ public class FallingMaths implements GameObject {
     private double x = -30.0 + 60 * RANDOM.nextDouble();
     private double y = 0;
     @NonNls public final String question;
-    private final Paint paint;
+    private final float sizePixels;
+    @Nullable private Paint paint;
 
     private boolean dead = false;
     private boolean landing = true;
 
     public final int answer;
+
+    /** The operands of {@link #question}. */
+    public final int a;
+
+    public final int b;
+
+    /** How long this challenge has been falling, in model time. */
+    private long ageMs;
+
     private final ObjectiveSoundPool.SoundEffect mathsKilled;
 
     public FallingMaths(
             @NonNls String question,
+            int a,
+            int b,
             int answer,
             Model model,
             double speedupFactor,
             float sizePixels,
             ObjectiveSoundPool.SoundEffect mathsKilled) {
         this.question = question;
+        this.a = a;
+        this.b = b;
         this.answer = answer;
         this.model = model;
         this.mathsKilled = mathsKilled;
 
+        this.speedupFactor = speedupFactor;
         percentPerMs = BASE_PERCENT_PER_MS * speedupFactor;
 
-        paint = new Paint();
-        paint.setColor(Color.WHITE);
-        paint.setTextSize(sizePixels);
-        paint.setTextAlign(Paint.Align.CENTER);
+        this.sizePixels = sizePixels;
+    }
+
+    /** Counterpart of {@link #readFrom}. */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(question);
+        out.writeInt(a);
+        out.writeInt(b);
+        out.writeInt(answer);
+        out.writeDouble(speedupFactor);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeBoolean(dead);
+        out.writeBoolean(landing);
+        out.writeLong(ageMs);
+    }
+
+    /** Counterpart of {@link #writeTo}. */
+    static FallingMaths readFrom(
+            DataInput in, Model model, float sizePixels, ObjectiveSoundPool.SoundEffect mathsKilled)
+            throws IOException {
+        String question = in.readUTF();
+        int a = in.readInt();
+        int b = in.readInt();
+        int answer = in.readInt();
+        double speedupFactor = in.readDouble();
+        FallingMaths fallingMaths =
+                new FallingMaths(
+                        question, a, b, answer, model, speedupFactor, sizePixels, mathsKilled);
+
+        fallingMaths.x = in.readDouble();
+        fallingMaths.y = in.readDouble();
+        fallingMaths.dead = in.readBoolean();
+        fallingMaths.landing = in.readBoolean();
+        fallingMaths.ageMs = in.readLong();
+        return fallingMaths;
     }
 
     @Override
     public void stepMs(long deltaMs) {
+        ageMs += deltaMs;
+
         if (!landing) {
             doNotLandStepMs(deltaMs);
             return;
@@ -85,6 +139,7 @@ public class FallingMaths implements GameObject {
 
         // Touchdown!
         model.noMoreMaths();
+        model.reportLanded(this);
 
         // Tell our math friends to fly away or start hovering ominously or something
         for (FallingMaths friend : model.listFallingMaths()) {
@@ -120,6 +175,10 @@ public class FallingMaths implements GameObject {
         float screenX = (float) (x * coordinatesToScreenFactor + xOffset);
         float screenY = (float) (y * coordinatesToScreenFactor);
 
+        if (paint == null) {
+            paint = TextPaints.create(Color.WHITE, sizePixels);
+        }
+
         canvas.drawText(question, screenX, screenY, paint);
     }
 
@@ -136,6 +195,15 @@ public class FallingMaths implements GameObject {
         return x;
     }
 
+    /** Landed challenges stay where they are. */
+    boolean hasLanded() {
+        return landing && y >= 100;
+    }
+
+    public long getAgeMs() {
+        return ageMs;
+    }
+
     public void explode() {
         mathsKilled.play();
         dead = true;
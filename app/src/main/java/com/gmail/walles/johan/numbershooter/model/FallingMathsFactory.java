@@ -16,8 +16,15 @@
 
 package com.gmail.walles.johan.numbershooter.model;
 
+import android.graphics.Paint;
+import androidx.annotation.WorkerThread;
 import com.gmail.walles.johan.numbershooter.GameType;
 import com.gmail.walles.johan.numbershooter.ObjectiveSoundPool;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 public class FallingMathsFactory {
     /**
@@ -30,27 +37,153 @@ public class FallingMathsFactory {
 
     private final ObjectiveSoundPool.SoundEffect mathsKilled;
     private final float objectSizePixels;
+    private final GameType gameType;
     private final MathsFactory mathsFactory;
     private final int level;
 
-    public FallingMathsFactory(
+    /** A challenge with its speed worked out. */
+    private static class Challenge {
+        private final MathsFactory.Maths maths;
+        private final double speedupFactor;
+
+        private Challenge(MathsFactory.Maths maths, double speedupFactor) {
+            this.maths = maths;
+            this.speedupFactor = speedupFactor;
+        }
+    }
+
+    /** Filled by {@link #createPrepared}. */
+    private final Queue<Challenge> prepared = new ArrayDeque<>();
+
+    private FallingMathsFactory(
             GameType gameType,
             int level,
             float objectSizePixels,
             ObjectiveSoundPool.SoundEffect mathsKilled) {
+        this.gameType = gameType;
         this.mathsFactory = MathsFactory.create(gameType);
         this.level = level;
         this.objectSizePixels = objectSizePixels;
         this.mathsKilled = mathsKilled;
     }
 
-    public final FallingMaths createChallenge(Model model) {
+    /**
+     * Create a factory with all challenges of this level picked up front. This is what makes {@link
+     * #writePrepared(DataOutput)} able to snapshot the upcoming challenges.
+     */
+    public static FallingMathsFactory createPrepared(
+            GameType gameType,
+            int level,
+            float objectSizePixels,
+            ObjectiveSoundPool.SoundEffect mathsKilled) {
+        FallingMathsFactory factory =
+                new FallingMathsFactory(gameType, level, objectSizePixels, mathsKilled);
+        for (int i = 0; i < Model.MATHS_PER_LEVEL; i++) {
+            factory.prepared.add(factory.pickChallenge());
+        }
+        return factory;
+    }
+
+    /**
+     * Have the texts of the upcoming challenges laid out once, so that the text layout cache is
+     * warm when they appear.
+     *
+     * <p>Call before handing this factory over to the thread creating challenges.
+     */
+    @WorkerThread
+    public void warmTextLayout() {
+        Paint paint = new Paint();
+        paint.setTextSize(objectSizePixels);
+        for (Challenge challenge : prepared) {
+            paint.measureText(challenge.maths.question);
+            paint.measureText(Integer.toString(challenge.maths.answer));
+        }
+    }
+
+    private Challenge pickChallenge() {
         MathsFactory.Maths maths = mathsFactory.pickChallenge(level);
 
+        // Picking sets the easiness, so we need to do this before the next pick
         double speedupPower = maths.easiness / (double) maths.topEasiness;
         double speedupFactor = Math.pow(SPEEDUP_FACTOR_AT_TOP_LEVEL, speedupPower);
 
+        return new Challenge(maths, speedupFactor);
+    }
+
+    public final FallingMaths createChallenge(Model model) {
+        Challenge challenge = prepared.poll();
+        if (challenge == null) {
+            challenge = pickChallenge();
+        }
+
+        MathsFactory.Maths maths = challenge.maths;
         return new FallingMaths(
-                maths.question, maths.answer, model, speedupFactor, objectSizePixels, mathsKilled);
+                maths.question,
+                maths.a,
+                maths.b,
+                maths.answer,
+                model,
+                challenge.speedupFactor,
+                objectSizePixels,
+                mathsKilled);
+    }
+
+    /** Read a challenge saved using {@link FallingMaths#writeTo}. */
+    FallingMaths readFallingMaths(DataInput in, Model model) throws IOException {
+        return FallingMaths.readFrom(in, model, objectSizePixels, mathsKilled);
+    }
+
+    /** Save the challenges still to come. Counterpart of {@link #restorePrepared}. */
+    void writePrepared(DataOutput out) throws IOException {
+        out.writeUTF(gameType.name());
+        out.writeInt(level);
+        out.writeInt(prepared.size());
+        for (Challenge challenge : prepared) {
+            MathsFactory.Maths maths = challenge.maths;
+            out.writeUTF(maths.question);
+            out.writeInt(maths.a);
+            out.writeInt(maths.b);
+            out.writeInt(maths.answer);
+            out.writeDouble(challenge.speedupFactor);
+        }
+    }
+
+    /**
+     * Replace the challenges still to come with saved ones. Counterpart of {@link #writePrepared}.
+     */
+    void restorePrepared(DataInput in) throws IOException {
+        String savedGameType = in.readUTF();
+        int savedLevel = in.readInt();
+        if (!gameType.name().equals(savedGameType) || level != savedLevel) {
+            throw new IOException(
+                    "Snapshot is for "
+                            + savedGameType
+                            + " level "
+                            + savedLevel
+                            + ", not "
+                            + gameType
+                            + " level "
+                            + level);
+        }
+
+        prepared.clear();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String question = in.readUTF();
+            int a = in.readInt();
+            int b = in.readInt();
+            int answer = in.readInt();
+            double speedupFactor = in.readDouble();
+            prepared.add(
+                    new Challenge(new MathsFactory.Maths(question, a, b, answer), speedupFactor));
+        }
+    }
+
+    public GameType getGameType() {
+        return gameType;
+    }
+
+    public int getLevel() {
+        return level;
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free fixed size queue of timestamped digits, with one producer thread and one consumer
+ * thread.
+ *
+ * <p>Works like {@code SpscRingBuffer}, but stores its entries in primitive arrays so that typing
+ * doesn't allocate, and lets the consumer look at the timestamp of the next entry before taking it.
+ */
+class InputQueue {
+    /** Returned by {@link #peekTimeMs()} when the queue is empty. */
+    static final long EMPTY = Long.MAX_VALUE;
+
+    private final int[] digits;
+    private final long[] timesMs;
+    private final int mask;
+
+    /** Next position to read from, only written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Next position to write to, only written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** @param capacity Must be a power of two */
+    InputQueue(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        digits = new int[capacity];
+        timesMs = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Producer thread only.
+     *
+     * @return false if the queue was full and the digit was dropped
+     */
+    boolean offer(int digit, long timeMs) {
+        long currentTail = tail.get();
+        if (currentTail - head.get() >= digits.length) {
+            return false;
+        }
+
+        int index = (int) (currentTail & mask);
+        digits[index] = digit;
+        timesMs[index] = timeMs;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Consumer thread only.
+     *
+     * @return The timestamp of the next digit, or {@link #EMPTY}
+     */
+    long peekTimeMs() {
+        long currentHead = head.get();
+        if (currentHead >= tail.get()) {
+            return EMPTY;
+        }
+
+        return timesMs[(int) (currentHead & mask)];
+    }
+
+    /**
+     * Consumer thread only, and only after {@link #peekTimeMs()} said there is something to poll.
+     *
+     * @return The next digit
+     */
+    int pollDigit() {
+        long currentHead = head.get();
+        if (currentHead >= tail.get()) {
+            throw new IllegalStateException("Input queue is empty");
+        }
+
+        int digit = digits[(int) (currentHead & mask)];
+        head.lazySet(currentHead + 1);
+        return digit;
+    }
+}
@@ -50,7 +50,7 @@ public abstract class MathsFactory {
     }
 
     public static int getTopLevel(GameType gameType) {
-        return create(gameType).getTopLevel();
+        return CompletionTable.get(gameType).getTopLevel();
     }
 
     /** List all possible maths problems. For all levels, not just one. */
@@ -124,7 +124,7 @@ public abstract class MathsFactory {
         return maths;
     }
 
-    private int getTopLevel() {
+    int getTopLevel() {
         return allMathsForAllLevels.size() / NEW_MATHS_PER_LEVEL;
     }
 
@@ -19,10 +19,20 @@ package com.gmail.walles.johan.numbershooter.model;
 import android.graphics.Canvas;
 import androidx.annotation.Nullable;
 import com.gmail.walles.johan.numbershooter.ObjectiveSoundPool;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
 
 /**
  * Coordinate system is Y=0%-100% where 0% is on top and 100% is on bottom.
@@ -31,7 +41,32 @@ import java.util.List;
  * the middle of the screen.
  */
 public class Model {
-    private static final int MATHS_PER_LEVEL = 20;
+    /** Gets told how the player did on each challenge. */
+    public interface ChallengeListener {
+        void onChallengeHit(FallingMaths challenge);
+
+        /**
+         * The player entered a wrong answer.
+         *
+         * @param lowest The lowest challenge on screen at the time, which is likely the one the
+         *     player was trying to answer
+         */
+        void onWrongAnswer(FallingMaths lowest);
+
+        void onChallengeLanded(FallingMaths challenge);
+    }
+
+    /** Gets told when the result of an input first makes it to the screen. */
+    public interface InputLatencyListener {
+        /**
+         * A shot was drawn for the first time.
+         *
+         * @param inputTimeMs When the digit that fired the shot was input
+         */
+        void onShotDrawn(long inputTimeMs);
+    }
+
+    static final int MATHS_PER_LEVEL = 20;
 
     private static final long UNSET = 0L;
 
@@ -47,11 +82,26 @@ public class Model {
     /** Don't show more than this number of challenges at once. */
     private static final int MAX_CHALLENGES = 4;
 
+    /** Nobody types this many digits between two frames. */
+    private static final int INPUT_QUEUE_SIZE = 32;
+
+    /** "MODL" */
+    private static final int SNAPSHOT_MAGIC = 0x4d4f444c;
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static final int SNAPSHOT_FALLING_MATHS = 0;
+    private static final int SNAPSHOT_SHOT = 1;
+    private static final int SNAPSHOT_DEBRIS = 2;
+
     private FallingMathsFactory fallingMathsFactory;
     private List<GameObject> stuff = new ArrayList<>();
     private List<GameObject> newObjects = new ArrayList<>();
     private final Cannon cannon;
 
+    /** Filled by {@link #insertDigit}, drained by {@link #updateTo}. */
+    private final InputQueue inputQueue = new InputQueue(INPUT_QUEUE_SIZE);
+
     private long lastUpdatedToMs = UNSET;
 
     /** When this is true no more maths will drop down from the sky. */
@@ -63,6 +113,9 @@ public class Model {
     private final ObjectiveSoundPool.SoundEffect mathsArriving;
     private final ObjectiveSoundPool.SoundEffect wrongAnswer;
 
+    @Nullable private ChallengeListener challengeListener;
+    @Nullable private InputLatencyListener inputLatencyListener;
+
     public Model(
             FallingMathsFactory fallingMathsFactory,
             float objectSizesInPixels,
@@ -78,22 +131,27 @@ public class Model {
         cannon = new Cannon(this, objectSizesInPixels, shotSound, explosionSound);
     }
 
-    /** Update model to the given timestamp. */
+    /**
+     * Update model to the given timestamp.
+     *
+     * <p>Queued input is applied at the time it happened. The simulation is stepped up to each
+     * input, the input is applied, and then stepping continues from there.
+     *
+     * @param timestampMillis In the {@link android.os.SystemClock#uptimeMillis()} time base, same
+     *     as input timestamps
+     */
     public void updateTo(long timestampMillis) {
-        if (lastUpdatedToMs == UNSET) {
-            lastUpdatedToMs = timestampMillis;
-            return;
-        }
-
         long deltaMs = timestampMillis - lastUpdatedToMs;
-        if (deltaMs < 0) {
-            // Clock went backwards, keep up
+        if (lastUpdatedToMs == UNSET || deltaMs < 0) {
+            // First update, or the clock went backwards. Keep up.
             lastUpdatedToMs = timestampMillis;
+            applyInputUntil(timestampMillis);
             return;
         }
 
         if (deltaMs > MAX_STEP_MS) {
-            deltaMs = MAX_STEP_MS;
+            // Don't simulate what happened while we were paused, just take one normal step
+            lastUpdatedToMs = timestampMillis - MAX_STEP_MS;
         }
 
         if (shouldAddChallenge()) {
@@ -102,6 +160,34 @@ public class Model {
             droppedMaths++;
         }
 
+        long simulatedToMs = lastUpdatedToMs;
+        long inputTimeMs;
+        while ((inputTimeMs = inputQueue.peekTimeMs()) <= timestampMillis) {
+            // Input older than this update gets applied right away
+            long stepToMs = Math.max(simulatedToMs, inputTimeMs);
+            stepMs(stepToMs - simulatedToMs);
+            simulatedToMs = stepToMs;
+
+            applyDigit(inputQueue.pollDigit(), inputTimeMs);
+        }
+        stepMs(timestampMillis - simulatedToMs);
+
+        lastUpdatedToMs = timestampMillis;
+    }
+
+    /** Apply queued input up to the given timestamp without moving anything. */
+    private void applyInputUntil(long timestampMillis) {
+        long inputTimeMs;
+        while ((inputTimeMs = inputQueue.peekTimeMs()) <= timestampMillis) {
+            applyDigit(inputQueue.pollDigit(), inputTimeMs);
+        }
+    }
+
+    private void stepMs(long deltaMs) {
+        if (deltaMs == 0) {
+            return;
+        }
+
         for (GameObject object : stuff) {
             object.stepMs(deltaMs);
         }
@@ -119,16 +205,10 @@ public class Model {
         // Stepping can create new objects
         stuff.addAll(newObjects);
         newObjects.clear();
-
-        lastUpdatedToMs = timestampMillis;
     }
 
     private boolean shouldAddChallenge() {
-        if (droppedMaths >= MATHS_PER_LEVEL) {
-            return false;
-        }
-
-        if (mathsStopped) {
+        if (!shouldEventuallyAddChallenges()) {
             return false;
         }
 
@@ -161,13 +241,30 @@ public class Model {
         }
     }
 
-    public void insertDigit(int digit) {
+    /**
+     * Queue a digit to be applied by the next {@link #updateTo} covering its input time.
+     *
+     * <p>Can be called from any one thread, not necessarily the one calling {@link #updateTo}.
+     *
+     * @param inputTimeMs When the digit was input, in the {@link
+     *     android.os.SystemClock#uptimeMillis()} time base
+     */
+    public void insertDigit(int digit, long inputTimeMs) {
+        if (!inputQueue.offer(digit, inputTimeMs)) {
+            Timber.w("Input queue full, dropping digit %d", digit);
+        }
+    }
+
+    private void applyDigit(int digit, long inputTimeMs) {
         cannon.addDigit(digit);
 
         FallingMaths target = findTarget(cannon.getText());
         if (target != null) {
             // The cannon contains the correct answer for one falling maths, shoot that one down
-            stuff.add(cannon.createShotFor(target));
+            stuff.add(cannon.createShotFor(target, inputTimeMs));
+            if (challengeListener != null) {
+                challengeListener.onChallengeHit(target);
+            }
             return;
         }
 
@@ -180,6 +277,43 @@ public class Model {
         // Wrong answer, clear the cannon
         wrongAnswer.play();
         Collections.addAll(stuff, cannon.createErrorDebris());
+
+        FallingMaths lowest = findLowest();
+        if (challengeListener != null && lowest != null) {
+            challengeListener.onWrongAnswer(lowest);
+        }
+    }
+
+    @Nullable
+    private FallingMaths findLowest() {
+        FallingMaths lowest = null;
+        for (FallingMaths candidate : listFallingMaths()) {
+            if (lowest == null || candidate.getY() > lowest.getY()) {
+                lowest = candidate;
+            }
+        }
+
+        return lowest;
+    }
+
+    void reportLanded(FallingMaths challenge) {
+        if (challengeListener != null) {
+            challengeListener.onChallengeLanded(challenge);
+        }
+    }
+
+    void reportShotDrawn(long inputTimeMs) {
+        if (inputLatencyListener != null) {
+            inputLatencyListener.onShotDrawn(inputTimeMs);
+        }
+    }
+
+    public void setInputLatencyListener(@Nullable InputLatencyListener inputLatencyListener) {
+        this.inputLatencyListener = inputLatencyListener;
+    }
+
+    public void setChallengeListener(@Nullable ChallengeListener challengeListener) {
+        this.challengeListener = challengeListener;
     }
 
     private boolean isStartOfAnAnswer(String prefix) {
@@ -247,6 +381,157 @@ public class Model {
         newObjects.add(object);
     }
 
+    /**
+     * Save everything needed to recreate this game using {@link #restoreSnapshot}.
+     *
+     * <p>Not included are input that hasn't been applied yet, and shots at challenges that have
+     * already been shot down by earlier shots.
+     */
+    public byte[] toSnapshot() {
+        // Shots refer to their targets by index among the saved challenges. Shots are always
+        // created after their targets, so targets come first.
+        Map<FallingMaths, Integer> challengeIndices = new IdentityHashMap<>();
+        List<GameObject> saved = new ArrayList<>(stuff.size());
+        for (GameObject object : stuff) {
+            if (object instanceof FallingMaths) {
+                challengeIndices.put((FallingMaths) object, challengeIndices.size());
+            } else if (object instanceof Shot) {
+                if (!challengeIndices.containsKey(((Shot) object).getTarget())) {
+                    // Target already shot down, this shot won't do anything
+                    continue;
+                }
+            }
+            saved.add(object);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + saved.size() * 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeInt(droppedMaths);
+            out.writeBoolean(mathsStopped);
+            cannon.writeTo(out);
+            fallingMathsFactory.writePrepared(out);
+
+            out.writeInt(saved.size());
+            for (GameObject object : saved) {
+                if (object instanceof FallingMaths) {
+                    out.writeByte(SNAPSHOT_FALLING_MATHS);
+                    ((FallingMaths) object).writeTo(out);
+                } else if (object instanceof Shot) {
+                    Shot shot = (Shot) object;
+                    out.writeByte(SNAPSHOT_SHOT);
+                    //noinspection ConstantConditions
+                    out.writeInt(challengeIndices.get(shot.getTarget()));
+                    shot.writeTo(out);
+                } else if (object instanceof Debris) {
+                    out.writeByte(SNAPSHOT_DEBRIS);
+                    ((Debris) object).writeTo(out);
+                } else {
+                    throw new UnsupportedOperationException(
+                            "Unhandled object type: " + object.getClass());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Writing to memory failed", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Recreate a game saved using {@link #toSnapshot()}.
+     *
+     * <p>Must be called on a newly created model for the same game type and level as the saved one,
+     * before its first update.
+     *
+     * @throws IOException if the snapshot couldn't be restored. This model should then be dropped,
+     *     since it may have been partially restored.
+     */
+    public void restoreSnapshot(byte[] snapshot) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a model snapshot");
+            }
+
+            int version = in.readUnsignedByte();
+            if (version != SNAPSHOT_VERSION) {
+                @NonNls String message = "Unsupported model snapshot version: " + version;
+                throw new IOException(message);
+            }
+
+            droppedMaths = in.readInt();
+            mathsStopped = in.readBoolean();
+            cannon.restoreFrom(in);
+            fallingMathsFactory.restorePrepared(in);
+
+            stuff.clear();
+            List<FallingMaths> challenges = new ArrayList<>();
+            float sizePixels = cannon.getTextSize();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int type = in.readUnsignedByte();
+                switch (type) {
+                    case SNAPSHOT_FALLING_MATHS:
+                        FallingMaths challenge = fallingMathsFactory.readFallingMaths(in, this);
+                        challenges.add(challenge);
+                        stuff.add(challenge);
+                        break;
+
+                    case SNAPSHOT_SHOT:
+                        int targetIndex = in.readInt();
+                        if (targetIndex < 0 || targetIndex >= challenges.size()) {
+                            throw new IOException("Shot target not found: " + targetIndex);
+                        }
+                        stuff.add(Shot.readFrom(in, sizePixels, challenges.get(targetIndex), this));
+                        break;
+
+                    case SNAPSHOT_DEBRIS:
+                        stuff.add(Debris.readFrom(in, sizePixels));
+                        break;
+
+                    default:
+                        throw new IOException("Unknown object type in model snapshot: " + type);
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated model snapshot", e);
+        }
+    }
+
+    /**
+     * @return false if nothing will move until more input arrives, so that there's no point in
+     *     drawing more frames
+     */
+    public boolean isAnimating() {
+        if (inputQueue.peekTimeMs() != InputQueue.EMPTY) {
+            return true;
+        }
+
+        if (shouldEventuallyAddChallenges()) {
+            return true;
+        }
+
+        if (!newObjects.isEmpty()) {
+            return true;
+        }
+
+        for (GameObject object : stuff) {
+            if (object instanceof FallingMaths && ((FallingMaths) object).hasLanded()) {
+                continue;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /** When this returns false, no more maths will drop down from the sky this level. */
+    private boolean shouldEventuallyAddChallenges() {
+        return droppedMaths < MATHS_PER_LEVEL && !mathsStopped;
+    }
+
     public boolean isDone() {
         if (droppedMaths >= MATHS_PER_LEVEL && listFallingMaths().isEmpty()) {
             return true;
@@ -19,26 +19,47 @@ package com.gmail.walles.johan.numbershooter.model;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import androidx.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 class Shot implements GameObject {
     private static final double MS_ACROSS_SCREEN = 500;
     private static final double PERCENT_PER_MS = 100.0 / MS_ACROSS_SCREEN;
     private final String text;
     private final FallingMaths target;
-    private final double dx;
-    private final double dy;
+    private double dx;
+    private double dy;
 
-    private final double initialSignumX;
-    private final double initialSignumY;
+    private double initialSignumX;
+    private double initialSignumY;
 
     private boolean dead = false;
 
     private double x;
     private double y;
-    private final Paint paint;
+    private final float sizePixels;
+    @Nullable private Paint paint;
 
-    public Shot(String text, float sizePixels, double x, double y, FallingMaths target) {
+    private final Model model;
+
+    /** When the digit that fired this shot was input. */
+    private final long inputTimeMs;
+
+    private boolean drawn = false;
+
+    public Shot(
+            String text,
+            float sizePixels,
+            double x,
+            double y,
+            FallingMaths target,
+            Model model,
+            long inputTimeMs) {
         this.text = text;
+        this.model = model;
+        this.inputTimeMs = inputTimeMs;
         this.x = x;
         this.y = y;
         this.target = target;
@@ -51,10 +72,45 @@ class Shot implements GameObject {
         this.dx = Math.cos(angle);
         this.dy = Math.sin(angle);
 
-        paint = new Paint();
-        paint.setColor(Color.WHITE);
-        paint.setTextSize(sizePixels);
-        paint.setTextAlign(Paint.Align.CENTER);
+        this.sizePixels = sizePixels;
+    }
+
+    FallingMaths getTarget() {
+        return target;
+    }
+
+    /**
+     * Counterpart of {@link #readFrom}. The target is not included, it is up to the caller to save
+     * it.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(text);
+        out.writeDouble(x);
+        out.writeDouble(y);
+        out.writeDouble(dx);
+        out.writeDouble(dy);
+        out.writeDouble(initialSignumX);
+        out.writeDouble(initialSignumY);
+    }
+
+    /** Counterpart of {@link #writeTo}. */
+    static Shot readFrom(DataInput in, float sizePixels, FallingMaths target, Model model)
+            throws IOException {
+        String text = in.readUTF();
+        double x = in.readDouble();
+        double y = in.readDouble();
+
+        // Direction is computed from the current position here, replaced by the saved one below
+        Shot shot = new Shot(text, sizePixels, x, y, target, model, 0);
+        shot.dx = in.readDouble();
+        shot.dy = in.readDouble();
+        shot.initialSignumX = in.readDouble();
+        shot.initialSignumY = in.readDouble();
+
+        // Input times from before a restore are in another time base, don't report them
+        shot.drawn = true;
+
+        return shot;
     }
 
     @Override
@@ -79,7 +135,16 @@ class Shot implements GameObject {
         float screenX = (float) (x * coordinatesToScreenFactor + xOffset);
         float screenY = (float) (y * coordinatesToScreenFactor);
 
+        if (paint == null) {
+            paint = TextPaints.create(Color.WHITE, sizePixels);
+        }
+
         canvas.drawText(text, screenX, screenY, paint);
+
+        if (!drawn) {
+            drawn = true;
+            model.reportShotDrawn(inputTimeMs);
+        }
     }
 
     @Override
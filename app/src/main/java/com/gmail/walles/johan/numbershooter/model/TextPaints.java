@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.model;
+
+import android.graphics.Paint;
+
+/**
+ * Paints for drawing game object texts.
+ *
+ * <p>Game objects create their paints on first draw rather than when constructed. That way the
+ * model can be run and snapshotted in plain JVM unit tests, where android.graphics methods aren't
+ * available.
+ */
+final class TextPaints {
+    private TextPaints() {
+        // Prevent us from being instantiated
+    }
+
+    static Paint create(int color, float sizePixels) {
+        Paint paint = new Paint();
+        paint.setColor(color);
+        paint.setTextSize(sizePixels);
+        paint.setTextAlign(Paint.Align.CENTER);
+        return paint;
+    }
+}
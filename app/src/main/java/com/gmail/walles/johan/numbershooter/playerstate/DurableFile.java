@@ -0,0 +1,223 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import android.os.Build;
+import androidx.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * A small file that survives power loss at any point during a write.
+ *
+ * <p>Contents are stored in two slots, "base.a" and "base.b", which are written alternately. Each
+ * write goes to the slot not holding the newest contents, and is synced to disk before returning.
+ * So if we die in the middle of a write, the other slot still has the previous contents.
+ *
+ * <p>Slot layout:
+ *
+ * <ul>
+ *   <li>4 bytes: {@link #MAGIC}
+ *   <li>8 bytes: Generation, one more than the generation of the previous write
+ *   <li>4 bytes: Payload length
+ *   <li>Payload
+ *   <li>4 bytes: CRC32 of everything above
+ * </ul>
+ *
+ * <p>Reading returns the payload of the valid slot with the highest generation. Files written
+ * before we had slots are read from the base file itself, which is deleted after the first
+ * successful slot write. Until then the base file is used whenever no slot is valid.
+ */
+class DurableFile {
+    /** "NVDF", for NumberVaders Durable File. */
+    private static final int MAGIC = 0x4e564446;
+
+    private static final int HEADER_BYTES = 4 + 8 + 4;
+    private static final int CRC_BYTES = 4;
+
+    private final File base;
+    private final File[] slots;
+
+    /** Generation of the newest valid slot, 0 if none, null if not known yet. */
+    @Nullable private Long newestGeneration;
+
+    DurableFile(File base) {
+        this.base = base;
+
+        @NonNls String a = base.getPath() + ".a";
+        @NonNls String b = base.getPath() + ".b";
+        this.slots = new File[] {new File(a), new File(b)};
+    }
+
+    /** @return The most recently written contents, or null if there are none */
+    @Nullable
+    synchronized byte[] read() throws IOException {
+        long bestGeneration = 0;
+        byte[] best = null;
+        boolean foundSlot = false;
+        for (File slot : slots) {
+            byte[] bytes;
+            try {
+                bytes = readFully(slot);
+            } catch (FileNotFoundException e) {
+                continue;
+            }
+            foundSlot = true;
+
+            Long generation = getGeneration(bytes);
+            if (generation == null) {
+                Timber.w("Ignoring broken slot %s", slot);
+                continue;
+            }
+
+            if (generation > bestGeneration) {
+                bestGeneration = generation;
+                best = bytes;
+            }
+        }
+        newestGeneration = bestGeneration;
+
+        if (best != null) {
+            int length = best.length - HEADER_BYTES - CRC_BYTES;
+            byte[] payload = new byte[length];
+            System.arraycopy(best, HEADER_BYTES, payload, 0, length);
+            return payload;
+        }
+
+        // The base file is only deleted after a successful slot write, so if the first slot write
+        // was torn the base file still has the newest contents
+        try {
+            return readFully(base);
+        } catch (FileNotFoundException e) {
+            if (foundSlot) {
+                Timber.e("No valid slots found for %s, starting over", base);
+            }
+            return null;
+        }
+    }
+
+    /** Store new contents. When this method returns they are on disk. */
+    synchronized void write(byte[] payload) throws IOException {
+        if (newestGeneration == null) {
+            read();
+        }
+        assert newestGeneration != null;
+
+        long generation = newestGeneration + 1;
+        File slot = slots[(int) (generation % 2)];
+        boolean slotExisted = slot.exists();
+
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES + payload.length + CRC_BYTES);
+        bytes.putInt(MAGIC);
+        bytes.putLong(generation);
+        bytes.putInt(payload.length);
+        bytes.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 0, bytes.position());
+        bytes.putInt((int) crc.getValue());
+
+        try (FileOutputStream out = new FileOutputStream(slot)) {
+            out.write(bytes.array());
+            out.getFD().sync();
+        }
+        newestGeneration = generation;
+
+        boolean directoryChanged = !slotExisted;
+        if (base.exists()) {
+            // From now on, the slots have the newest contents
+            if (!base.delete()) {
+                Timber.w("Failed to delete legacy file %s", base);
+            }
+            directoryChanged = true;
+        }
+
+        if (directoryChanged) {
+            syncDirectory(slot.getAbsoluteFile().getParentFile());
+        }
+    }
+
+    /** @return The generation of the given slot contents, or null if they are broken */
+    @Nullable
+    private static Long getGeneration(byte[] slotBytes) {
+        if (slotBytes.length < HEADER_BYTES + CRC_BYTES) {
+            return null;
+        }
+
+        ByteBuffer bytes = ByteBuffer.wrap(slotBytes);
+        if (bytes.getInt() != MAGIC) {
+            return null;
+        }
+        long generation = bytes.getLong();
+        int length = bytes.getInt();
+        if (length != slotBytes.length - HEADER_BYTES - CRC_BYTES) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(slotBytes, 0, HEADER_BYTES + length);
+        bytes.position(HEADER_BYTES + length);
+        if (bytes.getInt() != (int) crc.getValue()) {
+            return null;
+        }
+
+        return generation;
+    }
+
+    /**
+     * Make sure newly created and deleted files in this directory survive power loss.
+     *
+     * <p>Syncing a directory needs java.nio.file, which is only available on Android 8.0 and up. On
+     * older versions we skip this and rely on the file system journal.
+     */
+    private static void syncDirectory(@Nullable File directory) {
+        if (directory == null) {
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            Timber.d("Syncing directory %s failed: %s", directory, e);
+        }
+    }
+
+    static byte[] readFully(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+
+            byte[] bytes = new byte[(int) length];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+}
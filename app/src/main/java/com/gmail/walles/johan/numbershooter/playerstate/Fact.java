@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import androidx.annotation.Nullable;
+import com.gmail.walles.johan.numbershooter.GameType;
+import org.jetbrains.annotations.NonNls;
+
+/** One maths fact, like "3+4", that the player can know more or less well. */
+public final class Fact {
+    public final GameType gameType;
+    public final int a;
+    public final int b;
+
+    public Fact(GameType gameType, int a, int b) {
+        this.gameType = gameType;
+        this.a = a;
+        this.b = b;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Fact)) {
+            return false;
+        }
+
+        Fact fact = (Fact) o;
+        return gameType == fact.gameType && a == fact.a && b == fact.b;
+    }
+
+    @Override
+    public int hashCode() {
+        return (gameType.hashCode() * 31 + a) * 31 + b;
+    }
+
+    @NonNls
+    @Override
+    public String toString() {
+        return gameType + ":" + a + "," + b;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+/** How well the player has done on one {@link Fact}, summed over all sessions. */
+public final class FactStats {
+    /** How much weight each new latency gets in {@link #ewmaHitLatencyMs}. */
+    private static final float EWMA_ALPHA = 0.25f;
+
+    int hits;
+    int misses;
+    int landed;
+    long totalHitLatencyMs;
+
+    /** Exponentially weighted moving average, tracks recent progress better than the average. */
+    float ewmaHitLatencyMs;
+
+    FactStats() {}
+
+    FactStats(FactStats copyMe) {
+        hits = copyMe.hits;
+        misses = copyMe.misses;
+        landed = copyMe.landed;
+        totalHitLatencyMs = copyMe.totalHitLatencyMs;
+        ewmaHitLatencyMs = copyMe.ewmaHitLatencyMs;
+    }
+
+    void add(SessionHistory.Outcome outcome, int latencyMs) {
+        switch (outcome) {
+            case HIT:
+                hits++;
+                totalHitLatencyMs += latencyMs;
+                if (hits == 1) {
+                    ewmaHitLatencyMs = latencyMs;
+                } else {
+                    ewmaHitLatencyMs += EWMA_ALPHA * (latencyMs - ewmaHitLatencyMs);
+                }
+                break;
+
+            case MISS:
+                misses++;
+                break;
+
+            case LANDED:
+                landed++;
+                break;
+
+            default:
+                throw new UnsupportedOperationException("Unhandled outcome: " + outcome);
+        }
+    }
+
+    /** How many times was this fact shot down? */
+    public int getHits() {
+        return hits;
+    }
+
+    /** How many wrong answers were given while this fact was the lowest one on screen? */
+    public int getMisses() {
+        return misses;
+    }
+
+    /** How many times did this fact make it all the way down? */
+    public int getLanded() {
+        return landed;
+    }
+
+    /** Average time from this fact appearing until it was shot down, or 0 if it never was. */
+    public long getAverageHitLatencyMs() {
+        if (hits == 0) {
+            return 0;
+        }
+
+        return totalHitLatencyMs / hits;
+    }
+
+    /** Like {@link #getAverageHitLatencyMs()}, but with more weight on recent hits. */
+    public long getRecentHitLatencyMs() {
+        return Math.round(ewmaHitLatencyMs);
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import androidx.annotation.Nullable;
+import com.gmail.walles.johan.numbershooter.GameType;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import timber.log.Timber;
+
+/**
+ * Memory mapped {@link FactStats} for every {@link Fact} of every {@link GameType}.
+ *
+ * <p>Every fact has its own fixed position in the file, so updating one is just a few writes into
+ * mapped memory, and reading one requires no parsing at all.
+ *
+ * <p>Layout, all numbers big endian:
+ *
+ * <ul>
+ *   <li>4 bytes: {@link #MAGIC}
+ *   <li>4 bytes: {@link #LAYOUT}, changes whenever the set of facts changes
+ *   <li>8 bytes: Sequence number, bumped before each update
+ *   <li>{@link #RECORD_BYTES} per fact: hits, misses, landed, moving average hit latency (float)
+ *       and total hit latency (long)
+ *   <li>8 bytes: Sequence number, written after each update
+ * </ul>
+ *
+ * <p>The two sequence numbers differ only if we died in the middle of an update. Since everything
+ * in here can be recomputed from the {@link SessionHistory}, that's what we do in that case.
+ */
+class FactStatsFile {
+    /** "NVFS", for NumberVaders Fact Statistics. */
+    private static final int MAGIC = 0x4e564653;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int SEQUENCE_OFFSET = 8;
+
+    private static final int RECORD_BYTES = 24;
+    private static final int HITS = 0;
+    private static final int MISSES = 4;
+    private static final int LANDED = 8;
+    private static final int EWMA_HIT_LATENCY = 12;
+    private static final int TOTAL_HIT_LATENCY = 16;
+
+    /** Index of the first record for each game type, by ordinal. */
+    private static final int[] FIRST_RECORD = new int[GameType.values().length];
+
+    private static final int RECORD_COUNT;
+    private static final int FOOTER_OFFSET;
+    private static final int FILE_BYTES;
+    private static final int LAYOUT;
+
+    static {
+        int recordCount = 0;
+        int layout = VERSION;
+        for (GameType gameType : GameType.values()) {
+            FIRST_RECORD[gameType.ordinal()] = recordCount;
+            recordCount += gameType.topNumber * gameType.topNumber;
+            layout = layout * 31 + gameType.name().hashCode();
+            layout = layout * 31 + gameType.topNumber;
+        }
+
+        RECORD_COUNT = recordCount;
+        FOOTER_OFFSET = HEADER_BYTES + RECORD_COUNT * RECORD_BYTES;
+        FILE_BYTES = FOOTER_OFFSET + 8;
+        LAYOUT = layout;
+    }
+
+    private final File file;
+
+    /** Null until {@link #open()} has succeeded. */
+    @Nullable private MappedByteBuffer map;
+
+    FactStatsFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Map our file into memory, creating it if needed.
+     *
+     * @return false if the file was missing or inconsistent and should be {@link #rebuild rebuilt}
+     */
+    synchronized boolean open() throws IOException {
+        boolean existed = file.length() == FILE_BYTES;
+
+        // The mapping stays valid after the file has been closed
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(FILE_BYTES);
+            map = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+        }
+
+        if (existed
+                && map.getInt(0) == MAGIC
+                && map.getInt(4) == LAYOUT
+                && map.getLong(SEQUENCE_OFFSET) == map.getLong(FOOTER_OFFSET)) {
+            return true;
+        }
+
+        clear();
+        return false;
+    }
+
+    private void clear() {
+        assert map != null;
+
+        for (int i = 0; i < FILE_BYTES; i++) {
+            map.put(i, (byte) 0);
+        }
+        map.putInt(0, MAGIC);
+        map.putInt(4, LAYOUT);
+    }
+
+    /** Replace everything in this file with the given stats. */
+    synchronized void rebuild(Map<Fact, FactStats> allStats) {
+        if (map == null) {
+            return;
+        }
+
+        clear();
+        for (Map.Entry<Fact, FactStats> entry : allStats.entrySet()) {
+            int offset = getOffset(entry.getKey());
+            if (offset < 0) {
+                continue;
+            }
+
+            FactStats stats = entry.getValue();
+            map.putInt(offset + HITS, stats.hits);
+            map.putInt(offset + MISSES, stats.misses);
+            map.putInt(offset + LANDED, stats.landed);
+            map.putFloat(offset + EWMA_HIT_LATENCY, stats.ewmaHitLatencyMs);
+            map.putLong(offset + TOTAL_HIT_LATENCY, stats.totalHitLatencyMs);
+        }
+    }
+
+    synchronized void record(Fact fact, SessionHistory.Outcome outcome, int latencyMs) {
+        if (map == null) {
+            return;
+        }
+
+        int offset = getOffset(fact);
+        if (offset < 0) {
+            Timber.w("No statistics slot for %s", fact);
+            return;
+        }
+
+        long sequence = map.getLong(SEQUENCE_OFFSET) + 1;
+        map.putLong(SEQUENCE_OFFSET, sequence);
+
+        FactStats stats = read(offset);
+        stats.add(outcome, latencyMs);
+        map.putInt(offset + HITS, stats.hits);
+        map.putInt(offset + MISSES, stats.misses);
+        map.putInt(offset + LANDED, stats.landed);
+        map.putFloat(offset + EWMA_HIT_LATENCY, stats.ewmaHitLatencyMs);
+        map.putLong(offset + TOTAL_HIT_LATENCY, stats.totalHitLatencyMs);
+
+        map.putLong(FOOTER_OFFSET, sequence);
+    }
+
+    /** @return null if we don't have any stats for this fact, or if we aren't open (yet) */
+    @Nullable
+    synchronized FactStats get(Fact fact) {
+        if (map == null) {
+            return null;
+        }
+
+        int offset = getOffset(fact);
+        if (offset < 0) {
+            return null;
+        }
+
+        FactStats stats = read(offset);
+        if (stats.hits == 0 && stats.misses == 0 && stats.landed == 0) {
+            return null;
+        }
+        return stats;
+    }
+
+    private FactStats read(int offset) {
+        assert map != null;
+
+        FactStats stats = new FactStats();
+        stats.hits = map.getInt(offset + HITS);
+        stats.misses = map.getInt(offset + MISSES);
+        stats.landed = map.getInt(offset + LANDED);
+        stats.ewmaHitLatencyMs = map.getFloat(offset + EWMA_HIT_LATENCY);
+        stats.totalHitLatencyMs = map.getLong(offset + TOTAL_HIT_LATENCY);
+        return stats;
+    }
+
+    /** Write all changes to disk, blocks until done. */
+    synchronized void force() {
+        if (map == null) {
+            return;
+        }
+
+        map.force();
+    }
+
+    /** @return the byte offset of this fact's record, or -1 if this fact has no record */
+    private static int getOffset(Fact fact) {
+        int top = fact.gameType.topNumber;
+
+        // Position facts by the two numbers that range from 1 to topNumber
+        int first;
+        switch (fact.gameType) {
+            case ADDITION:
+            case MULTIPLICATION:
+                first = fact.a;
+                break;
+
+            case SUBTRACTION:
+                first = fact.a - fact.b;
+                break;
+
+            case DIVISION:
+                first = fact.b == 0 ? 0 : fact.a / fact.b;
+                break;
+
+            default:
+                throw new UnsupportedOperationException("Unhandled game type: " + fact.gameType);
+        }
+
+        if (first < 1 || first > top || fact.b < 1 || fact.b > top) {
+            return -1;
+        }
+
+        int index = FIRST_RECORD[fact.gameType.ordinal()] + (first - 1) * top + (fact.b - 1);
+        return HEADER_BYTES + index * RECORD_BYTES;
+    }
+}
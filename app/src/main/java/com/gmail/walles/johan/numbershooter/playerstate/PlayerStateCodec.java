@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeSet;
+import org.jetbrains.annotations.NonNls;
+
+/**
+ * Binary on-disk format for {@link PlayerStateV3}.
+ *
+ * <p>Layout:
+ *
+ * <ul>
+ *   <li>4 bytes: {@link #MAGIC}
+ *   <li>1 byte: {@link #VERSION}
+ *   <li>varint: number of game types
+ *   <li>For each game type: Its name in modified UTF-8, followed by varints for hardest level, next
+ *       level to play and medals-awarded level. 0 means "not set".
+ * </ul>
+ *
+ * <p>Game types are stored by name rather than by ordinal, so that more types can be added in the
+ * future without any data migrations.
+ */
+class PlayerStateCodec {
+    /** "NVPS", for NumberVaders Player State. Never the first bytes of a serialized object. */
+    private static final int MAGIC = 0x4e565053;
+
+    private static final int VERSION = 1;
+
+    private PlayerStateCodec() {
+        // Prevent us from being instantiated
+    }
+
+    static boolean hasMagic(byte[] bytes) {
+        if (bytes.length < 4) {
+            return false;
+        }
+
+        int magic =
+                ((bytes[0] & 0xff) << 24)
+                        | ((bytes[1] & 0xff) << 16)
+                        | ((bytes[2] & 0xff) << 8)
+                        | (bytes[3] & 0xff);
+        return magic == MAGIC;
+    }
+
+    static byte[] encode(PlayerStateV3 playerState) {
+        TreeSet<String> gameTypeNames = new TreeSet<>();
+        gameTypeNames.addAll(playerState.hardestLevels.keySet());
+        gameTypeNames.addAll(playerState.nextToPlayLevels.keySet());
+        gameTypeNames.addAll(playerState.highestMedalsAwardedLevels.keySet());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+
+            writeVarint(out, gameTypeNames.size());
+            for (String gameTypeName : gameTypeNames) {
+                out.writeUTF(gameTypeName);
+                writeVarint(out, get(playerState.hardestLevels, gameTypeName));
+                writeVarint(out, get(playerState.nextToPlayLevels, gameTypeName));
+                writeVarint(out, get(playerState.highestMedalsAwardedLevels, gameTypeName));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Writing to memory failed", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /** @param playerState Decoded values will be put into this player state */
+    static void decode(byte[] bytes, PlayerStateV3 playerState) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a player state, magic number missing");
+            }
+
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                @NonNls String message = "Unsupported player state version: " + version;
+                throw new IOException(message);
+            }
+
+            int count = readVarint(in);
+            for (int i = 0; i < count; i++) {
+                String gameTypeName = in.readUTF();
+                put(playerState.hardestLevels, gameTypeName, readVarint(in));
+                put(playerState.nextToPlayLevels, gameTypeName, readVarint(in));
+                put(playerState.highestMedalsAwardedLevels, gameTypeName, readVarint(in));
+            }
+        }
+    }
+
+    private static int get(Map<String, Integer> map, String key) {
+        Integer value = map.get(key);
+        if (value == null) {
+            return 0;
+        }
+
+        return value;
+    }
+
+    private static void put(Map<String, Integer> map, String key, int value) {
+        if (value == 0) {
+            return;
+        }
+
+        map.put(key, value);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative values not supported: " + value);
+        }
+
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Varint too long");
+    }
+}
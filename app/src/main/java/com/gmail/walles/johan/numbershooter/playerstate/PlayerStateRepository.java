@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * Keeps the one and only {@link PlayerStateV3} in memory, and writes changes to it to disk in the
+ * background.
+ *
+ * <p>Changes made in quick succession are coalesced into a single write.
+ */
+public class PlayerStateRepository {
+    /** Wait this long after a change before writing, in case more changes come in. */
+    private static final long WRITE_DELAY_MS = 1000;
+
+    private final File file;
+    private final ScheduledExecutorService writer =
+            Executors.newSingleThreadScheduledExecutor(
+                    runnable -> {
+                        @NonNls String name = "PlayerStateWriter";
+                        return new Thread(runnable, name);
+                    });
+
+    @Nullable private PlayerStateV3 playerState;
+
+    /** The most recent not-yet-written player state. */
+    @Nullable private byte[] pendingWrite;
+
+    private boolean writeScheduled = false;
+
+    public PlayerStateRepository(File file) {
+        this.file = file;
+    }
+
+    /** Loads the player state from disk on first call, after that it's just a memory access. */
+    public synchronized PlayerStateV3 get() throws IOException {
+        if (playerState == null) {
+            playerState = PlayerStateV3.fromFile(file);
+            playerState.setWriter(this::scheduleWrite);
+        }
+
+        return playerState;
+    }
+
+    /**
+     * Start writing any pending changes now, without waiting for the write delay.
+     *
+     * <p>Doesn't block, use the returned future to wait for the write to finish.
+     */
+    public Future<?> flush() {
+        return writer.submit(this::writePending);
+    }
+
+    private synchronized void scheduleWrite(byte[] bytes) {
+        pendingWrite = bytes;
+        if (writeScheduled) {
+            // Pending write will pick our bytes up
+            return;
+        }
+
+        writeScheduled = true;
+        writer.schedule(this::writePending, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Must be called on the writer thread. */
+    private void writePending() {
+        byte[] bytes;
+        PlayerStateV3 target;
+        synchronized (this) {
+            target = playerState;
+            bytes = pendingWrite;
+            pendingWrite = null;
+            writeScheduled = false;
+        }
+
+        if (bytes == null || target == null) {
+            return;
+        }
+
+        try {
+            target.writeToDisk(bytes);
+        } catch (IOException e) {
+            Timber.e(e, "Writing player state failed");
+        }
+    }
+}
@@ -21,12 +21,9 @@ import androidx.annotation.VisibleForTesting;
 import com.gmail.walles.johan.numbershooter.GameType;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.HashMap;
 import org.jetbrains.annotations.NonNls;
@@ -35,6 +32,9 @@ import org.jetbrains.annotations.NonNls;
  * Note that this class needs to stay in the {@link
  * com.gmail.walles.johan.numbershooter.playerstate} package for deserialization of old player
  * states to work.
+ *
+ * <p>Player states used to be stored using Java serialization, these days they are stored using
+ * {@link PlayerStateCodec}. Old files are converted on first load.
  */
 public class PlayerStateV3 implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -47,7 +47,7 @@ public class PlayerStateV3 implements Serializable {
      * <p>Note that we store the enum {@link GameType} as a {@link String} to be able to support
      * more types in the future without more data migrations.
      */
-    private HashMap<String, Integer> hardestLevels = new HashMap<>();
+    HashMap<String, Integer> hardestLevels = new HashMap<>();
 
     /**
      * The next level that the user will get to play for each game type.
@@ -57,38 +57,81 @@ public class PlayerStateV3 implements Serializable {
      * <p>Note that we store the enum {@link GameType} as a {@link String} to be able to support
      * more types in the future without more data migrations.
      */
-    private HashMap<String, Integer> nextToPlayLevels = new HashMap<>();
+    HashMap<String, Integer> nextToPlayLevels = new HashMap<>();
 
     /** Maps game type name to the highest level + 1 for which medals have been awarded. */
-    private HashMap<String, Integer> highestMedalsAwardedLevels = new HashMap<>();
+    HashMap<String, Integer> highestMedalsAwardedLevels = new HashMap<>();
 
-    /** This is our on-disk backing store. */
+    /**
+     * This is our on-disk backing store.
+     *
+     * <p>Only kept for deserializing old player states, use {@link #durableFile} instead.
+     */
     private final File file;
 
+    private final transient DurableFile durableFile;
+
+    interface Writer {
+        /** Write the given bytes to our backing store, now or later. */
+        void write(byte[] bytes) throws IOException;
+    }
+
+    /** By default we write synchronously. */
+    private transient Writer writer = this::writeToDisk;
+
     private PlayerStateV3(File file) {
         this.file = file;
+        this.durableFile = new DurableFile(file);
     }
 
     @VisibleForTesting
     public static PlayerStateV3 fromFile(@NonNls File file) throws IOException {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+        PlayerStateV3 returnMe = new PlayerStateV3(file);
+        byte[] bytes = returnMe.durableFile.read();
+        if (bytes == null) {
+            return returnMe;
+        }
+
+        if (PlayerStateCodec.hasMagic(bytes)) {
             // FIXME: Look at the file timestamp here to determine if we should drop one or more
             // levels?
-            return (PlayerStateV3) in.readObject();
+            PlayerStateCodec.decode(bytes, returnMe);
+            return returnMe;
+        }
+
+        // Convert old formats once, from now on this file is in our binary format
+        PlayerStateV3 migrated = fromSerializedFile(file);
+        migrated.persist();
+        return migrated;
+    }
+
+    /**
+     * Load a player state stored using Java serialization, by this or any of the previous player
+     * state classes.
+     */
+    private static PlayerStateV3 fromSerializedFile(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            PlayerStateV3 loaded = (PlayerStateV3) in.readObject();
+
+            // Old player states contain the file they were loaded from, make sure we use the one
+            // we were asked to load instead
+            PlayerStateV3 returnMe = new PlayerStateV3(file);
+            returnMe.hardestLevels = loaded.hardestLevels;
+            returnMe.nextToPlayLevels = loaded.nextToPlayLevels;
+            returnMe.highestMedalsAwardedLevels = loaded.highestMedalsAwardedLevels;
+            return returnMe;
         } catch (ClassCastException | ClassNotFoundException | InvalidClassException e) {
-            return migrate(PlayerStateV2.fromFile(file));
-        } catch (FileNotFoundException e) {
-            return new PlayerStateV3(file);
+            return migrate(PlayerStateV2.fromFile(file), file);
         }
     }
 
-    private static PlayerStateV3 migrate(PlayerStateV2 playerState) throws IOException {
-        PlayerStateV3 returnMe = new PlayerStateV3(playerState.file);
+    private static PlayerStateV3 migrate(PlayerStateV2 playerState, File file) {
+        PlayerStateV3 returnMe = new PlayerStateV3(file);
         returnMe.hardestLevels = new HashMap<>(playerState.levels);
         returnMe.nextToPlayLevels = new HashMap<>(playerState.levels);
         returnMe.highestMedalsAwardedLevels = new HashMap<>();
         for (GameType gameType : GameType.values()) {
-            returnMe.setMedalsAwarded(gameType);
+            returnMe.markMedalsAwarded(gameType);
         }
 
         // FIXME: Look at the file timestamp here to determine if we should drop one or more levels?
@@ -96,28 +139,25 @@ public class PlayerStateV3 implements Serializable {
         return returnMe;
     }
 
-    public static PlayerStateV3 fromContext(Context context) throws IOException {
-        return fromFile(new File(context.getFilesDir(), PLAYER_STATE_FILE_NAME));
+    public static File getFile(Context context) {
+        return new File(context.getFilesDir(), PLAYER_STATE_FILE_NAME);
+    }
+
+    void setWriter(Writer writer) {
+        this.writer = writer;
     }
 
-    /** Atomically persist to disk via a tempfile */
     private void persist() throws IOException {
-        @NonNls String pathname = file.getPath() + ".tmp";
-        File tempfile = new File(pathname);
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tempfile))) {
-            out.writeObject(this);
-        }
+        writer.write(PlayerStateCodec.encode(this));
+    }
 
-        if (!tempfile.renameTo(file)) {
-            @NonNls
-            String message =
-                    "Rename failed: " + tempfile.getAbsolutePath() + "->" + file.getAbsolutePath();
-            throw new IOException(message);
-        }
+    /** Write to disk, returns after the bytes have been synced to disk. */
+    void writeToDisk(byte[] bytes) throws IOException {
+        durableFile.write(bytes);
     }
 
     /** This method is expected to be called from GameActivity when a level is completed */
-    public void reportSuccess(GameType gameType) throws IOException {
+    public synchronized void reportSuccess(GameType gameType) throws IOException {
         Integer oldNext = nextToPlayLevels.get(gameType.toString());
         if (oldNext == null) {
             oldNext = 1;
@@ -135,7 +175,7 @@ public class PlayerStateV3 implements Serializable {
     }
 
     /** This method is expected to be called from GameActivity when the player failed a level */
-    public void reportFailure(GameType gameType) throws IOException {
+    public synchronized void reportFailure(GameType gameType) throws IOException {
         Integer hardest = hardestLevels.get(gameType.toString());
         if (hardest == null) {
             hardest = 1;
@@ -166,7 +206,7 @@ public class PlayerStateV3 implements Serializable {
     }
 
     /** Returns the next level this user will be presented with. */
-    public int getNextLevel(GameType gameType) {
+    public synchronized int getNextLevel(GameType gameType) {
         Integer returnMe = nextToPlayLevels.get(gameType.toString());
         if (returnMe == null) {
             return 1;
@@ -174,7 +214,7 @@ public class PlayerStateV3 implements Serializable {
         return returnMe;
     }
 
-    public boolean medalsAlreadyAwarded(GameType gameType) {
+    public synchronized boolean medalsAlreadyAwarded(GameType gameType) {
         Integer highestAwardLevel = highestMedalsAwardedLevels.get(gameType.toString());
         if (highestAwardLevel == null) {
             return false;
@@ -185,7 +225,13 @@ public class PlayerStateV3 implements Serializable {
         return highestAwardLevel >= nextLevel;
     }
 
-    public void setMedalsAwarded(GameType gameType) throws IOException {
+    public synchronized void setMedalsAwarded(GameType gameType) throws IOException {
+        markMedalsAwarded(gameType);
+
+        persist();
+    }
+
+    private void markMedalsAwarded(GameType gameType) {
         Integer highestAwardLevel = highestMedalsAwardedLevels.get(gameType.toString());
         if (highestAwardLevel == null) {
             highestAwardLevel = 0;
@@ -195,11 +241,9 @@ public class PlayerStateV3 implements Serializable {
         if (nextLevel > highestAwardLevel) {
             highestMedalsAwardedLevels.put(gameType.toString(), nextLevel);
         }
-
-        persist();
     }
 
-    public int getHardestLevel(GameType gameType) {
+    public synchronized int getHardestLevel(GameType gameType) {
         Integer hardest = hardestLevels.get(gameType.toString());
         if (hardest == null) {
             return 1;
@@ -0,0 +1,478 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.gmail.walles.johan.numbershooter.GameType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NonNls;
+import timber.log.Timber;
+
+/**
+ * Append-only log of every challenge the player has shot down, missed or let land.
+ *
+ * <p>Calling {@link #record} only queues the record, all disk access happens on a background writer
+ * thread through a buffered {@link FileChannel}. When the log grows large enough it gets folded
+ * into per-{@link Fact} {@link FactStats} and truncated, so both the log and the time it takes to
+ * open it stay bounded no matter how long people have been playing.
+ *
+ * <p>Log record layout:
+ *
+ * <ul>
+ *   <li>2 bytes: payload length
+ *   <li>8 bytes: sequence number
+ *   <li>8 bytes: wall clock timestamp
+ *   <li>1 byte + that many bytes: game type name in ASCII
+ *   <li>2 + 2 bytes: the operands a and b
+ *   <li>1 byte: {@link Outcome} ordinal
+ *   <li>4 bytes: latency in milliseconds
+ * </ul>
+ *
+ * <p>Up to date per-fact statistics are also kept in a memory mapped {@link FactStatsFile}, so that
+ * they can be read at any time without parsing anything.
+ *
+ * <p>The aggregates file remembers the last sequence number folded into it. That way, if we die
+ * between writing the aggregates and truncating the log, no record is ever counted twice.
+ */
+public class SessionHistory {
+    public enum Outcome {
+        /** The player shot this challenge down. */
+        HIT,
+
+        /** The player entered something wrong while this challenge was the lowest one. */
+        MISS,
+
+        /** This challenge reached the bottom of the screen. */
+        LANDED
+    }
+
+    @NonNls private static final String LOG_FILE_NAME = "session-history";
+    @NonNls private static final String AGGREGATES_FILE_NAME = "session-aggregates";
+    @NonNls private static final String STATS_FILE_NAME = "fact-stats";
+
+    /** "NVSH", for NumberVaders Session History. */
+    private static final int AGGREGATES_MAGIC = 0x4e565348;
+
+    private static final int AGGREGATES_VERSION = 1;
+
+    private static final int COMPACT_AT_BYTES = 64 * 1024;
+    private static final int BUFFER_BYTES = 4 * 1024;
+
+    /** Buffered records reach the disk at most this long after being recorded. */
+    private static final long DRAIN_DELAY_MS = 5000;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final File logFile;
+    private final DurableFile aggregatesFile;
+    private final FactStatsFile statsFile;
+    private final int compactAtBytes;
+
+    private final ScheduledExecutorService writer =
+            Executors.newSingleThreadScheduledExecutor(
+                    runnable -> {
+                        @NonNls String name = "SessionHistoryWriter";
+                        return new Thread(runnable, name);
+                    });
+
+    // Everything below is only ever touched on the writer thread
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /** Null if opening the log failed, in which case we don't record anything. */
+    @Nullable private FileChannel channel;
+
+    /** Log size on disk, not counting what's in {@link #buffer}. */
+    private long logBytes;
+
+    private long nextSequence;
+    private long lastFoldedSequence;
+    private final Map<Fact, FactStats> aggregates = new HashMap<>();
+    private boolean drainScheduled;
+
+    public SessionHistory(Context context) {
+        this(
+                new File(context.getFilesDir(), LOG_FILE_NAME),
+                new File(context.getFilesDir(), AGGREGATES_FILE_NAME),
+                new File(context.getFilesDir(), STATS_FILE_NAME),
+                COMPACT_AT_BYTES);
+    }
+
+    @VisibleForTesting
+    SessionHistory(File logFile, File aggregatesFile, File statsFile, int compactAtBytes) {
+        this.logFile = logFile;
+        this.aggregatesFile = new DurableFile(aggregatesFile);
+        this.statsFile = new FactStatsFile(statsFile);
+        this.compactAtBytes = compactAtBytes;
+
+        writer.execute(this::open);
+    }
+
+    /** Queue a record for writing. Never blocks. */
+    public void record(GameType gameType, int a, int b, Outcome outcome, long latencyMs) {
+        long timestamp = System.currentTimeMillis();
+        int clampedLatencyMs = (int) Math.min(Math.max(latencyMs, 0), Integer.MAX_VALUE);
+        writer.execute(() -> append(timestamp, gameType, a, b, outcome, clampedLatencyMs));
+    }
+
+    /** Get everything buffered onto disk. Use the returned future to wait for that to happen. */
+    public Future<?> flush() {
+        return writer.submit(
+                () -> {
+                    if (channel == null) {
+                        return;
+                    }
+
+                    try {
+                        drain();
+                        channel.force(false);
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                    statsFile.force();
+                });
+    }
+
+    /**
+     * Get up to date statistics for one fact. Cheap enough to call from any thread at any time.
+     *
+     * @return null if this fact was never played, or if we haven't finished starting up yet
+     */
+    @Nullable
+    public FactStats getStats(Fact fact) {
+        return statsFile.get(fact);
+    }
+
+    /** Fold the whole log into the aggregates and return a copy of those. */
+    public Future<Map<Fact, FactStats>> getAggregates() {
+        return writer.submit(
+                (Callable<Map<Fact, FactStats>>)
+                        () -> {
+                            if (channel != null) {
+                                try {
+                                    drain();
+                                    compact();
+                                } catch (IOException e) {
+                                    fail(e);
+                                }
+                            }
+
+                            Map<Fact, FactStats> returnMe = new HashMap<>();
+                            for (Map.Entry<Fact, FactStats> entry : aggregates.entrySet()) {
+                                returnMe.put(entry.getKey(), new FactStats(entry.getValue()));
+                            }
+                            return returnMe;
+                        });
+    }
+
+    private void open() {
+        try {
+            readAggregates();
+
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            channel = file.getChannel();
+            nextSequence = lastFoldedSequence + 1;
+
+            // Drop any half written record at the end, appending after it would make the rest
+            // of the log unreadable
+            long validBytes = readLog(null);
+            if (validBytes < channel.size()) {
+                Timber.w(
+                        "Dropping %d bytes of partial session history",
+                        channel.size() - validBytes);
+                channel.truncate(validBytes);
+            }
+            channel.position(validBytes);
+            logBytes = validBytes;
+        } catch (IOException | RuntimeException e) {
+            // Not failing here would leave us appending from the start of the log
+            fail(e);
+            return;
+        }
+
+        try {
+            if (!statsFile.open()) {
+                Timber.i("Rebuilding fact statistics from session history");
+                compact();
+                statsFile.rebuild(aggregates);
+            }
+        } catch (IOException e) {
+            Timber.e(e, "Setting up fact statistics failed");
+        }
+    }
+
+    private void fail(Exception e) {
+        Timber.e(e, "Session history failed, not recording any more");
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // We're already failing
+            }
+        }
+        channel = null;
+    }
+
+    private void append(
+            long timestamp, GameType gameType, int a, int b, Outcome outcome, int latencyMs) {
+        if (channel == null) {
+            return;
+        }
+
+        byte[] name = gameType.name().getBytes(ASCII);
+        int payloadLength = 8 + 8 + 1 + name.length + 2 + 2 + 1 + 4;
+
+        try {
+            if (buffer.remaining() < 2 + payloadLength) {
+                drain();
+            }
+
+            buffer.putShort((short) payloadLength);
+            buffer.putLong(nextSequence++);
+            buffer.putLong(timestamp);
+            buffer.put((byte) name.length);
+            buffer.put(name);
+            buffer.putShort((short) a);
+            buffer.putShort((short) b);
+            buffer.put((byte) outcome.ordinal());
+            buffer.putInt(latencyMs);
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+
+        statsFile.record(new Fact(gameType, a, b), outcome, latencyMs);
+
+        if (!drainScheduled) {
+            drainScheduled = true;
+            writer.schedule(this::scheduledDrain, DRAIN_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledDrain() {
+        drainScheduled = false;
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            drain();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /** Write our buffer to the end of the log, and compact the log if it has grown too large. */
+    private void drain() throws IOException {
+        assert channel != null;
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            logBytes += channel.write(buffer);
+        }
+        buffer.clear();
+
+        if (logBytes >= compactAtBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Fold all log records into {@link #aggregates}, save those and truncate the log.
+     *
+     * <p>Must be called with an empty {@link #buffer}.
+     */
+    private void compact() throws IOException {
+        assert channel != null;
+        if (logBytes == 0) {
+            return;
+        }
+
+        readLog(aggregates);
+        writeAggregates();
+
+        channel.truncate(0);
+        channel.position(0);
+        logBytes = 0;
+    }
+
+    /**
+     * Read all complete records in the log. Also updates {@link #nextSequence}.
+     *
+     * @param foldInto If non-null, records not previously folded will be folded into this map
+     * @return The number of bytes in the log holding complete records
+     */
+    private long readLog(@Nullable Map<Fact, FactStats> foldInto) throws IOException {
+        assert channel != null;
+
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Session history too large: " + size);
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, bytes.position()) < 0) {
+                break;
+            }
+        }
+        bytes.flip();
+
+        long highestSequence = lastFoldedSequence;
+        while (bytes.remaining() >= 2) {
+            int payloadLength = bytes.getShort(bytes.position()) & 0xffff;
+            if (bytes.remaining() < 2 + payloadLength) {
+                // Half written record
+                break;
+            }
+            bytes.position(bytes.position() + 2);
+            ByteBuffer payload = bytes.slice();
+            payload.limit(payloadLength);
+            bytes.position(bytes.position() + payloadLength);
+
+            try {
+                long sequence = payload.getLong();
+                highestSequence = Math.max(highestSequence, sequence);
+                if (foldInto == null || sequence <= lastFoldedSequence) {
+                    continue;
+                }
+
+                fold(payload, foldInto);
+            } catch (RuntimeException e) {
+                // Whatever is wrong with this record, the rest of the log is still good
+                Timber.w(e, "Skipping unreadable session history record");
+            }
+        }
+
+        nextSequence = Math.max(nextSequence, highestSequence + 1);
+        if (foldInto != null) {
+            lastFoldedSequence = highestSequence;
+        }
+
+        return bytes.position();
+    }
+
+    /** @param payload A log record payload, positioned right after the sequence number */
+    private static void fold(ByteBuffer payload, Map<Fact, FactStats> foldInto) {
+        payload.getLong(); // Timestamp, not used for the aggregates
+        byte[] name = new byte[payload.get() & 0xff];
+        payload.get(name);
+        GameType gameType = GameType.valueOf(new String(name, ASCII));
+        int a = payload.getShort();
+        int b = payload.getShort();
+        int outcomeOrdinal = payload.get();
+        if (outcomeOrdinal < 0 || outcomeOrdinal >= Outcome.values().length) {
+            throw new IllegalArgumentException("Unknown outcome: " + outcomeOrdinal);
+        }
+        Outcome outcome = Outcome.values()[outcomeOrdinal];
+        int latencyMs = payload.getInt();
+
+        Fact fact = new Fact(gameType, a, b);
+        FactStats stats = foldInto.get(fact);
+        if (stats == null) {
+            stats = new FactStats();
+            foldInto.put(fact, stats);
+        }
+        stats.add(outcome, latencyMs);
+    }
+
+    private void readAggregates() throws IOException {
+        byte[] bytes = aggregatesFile.read();
+        if (bytes == null) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != AGGREGATES_MAGIC) {
+                throw new IOException("Not a session aggregates file: " + aggregatesFile);
+            }
+
+            int version = in.readUnsignedByte();
+            if (version != AGGREGATES_VERSION) {
+                @NonNls String message = "Unsupported session aggregates version: " + version;
+                throw new IOException(message);
+            }
+
+            lastFoldedSequence = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String gameTypeName = in.readUTF();
+                int a = in.readShort();
+                int b = in.readShort();
+                FactStats stats = new FactStats();
+                stats.hits = in.readInt();
+                stats.misses = in.readInt();
+                stats.landed = in.readInt();
+                stats.totalHitLatencyMs = in.readLong();
+                stats.ewmaHitLatencyMs = in.readFloat();
+
+                GameType gameType;
+                try {
+                    gameType = GameType.valueOf(gameTypeName);
+                } catch (IllegalArgumentException e) {
+                    Timber.w("Dropping aggregates for unknown game type %s", gameTypeName);
+                    continue;
+                }
+                aggregates.put(new Fact(gameType, a, b), stats);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated session aggregates file: " + aggregatesFile, e);
+        }
+    }
+
+    private void writeAggregates() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + aggregates.size() * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(AGGREGATES_MAGIC);
+            out.writeByte(AGGREGATES_VERSION);
+            out.writeLong(lastFoldedSequence);
+            out.writeInt(aggregates.size());
+            for (Map.Entry<Fact, FactStats> entry : aggregates.entrySet()) {
+                Fact fact = entry.getKey();
+                FactStats stats = entry.getValue();
+                out.writeUTF(fact.gameType.name());
+                out.writeShort(fact.a);
+                out.writeShort(fact.b);
+                out.writeInt(stats.hits);
+                out.writeInt(stats.misses);
+                out.writeInt(stats.landed);
+                out.writeLong(stats.totalHitLatencyMs);
+                out.writeFloat(stats.ewmaHitLatencyMs);
+            }
+        }
+
+        aggregatesFile.write(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameSchedulerTest {
+    @Test
+    public void shouldRunOnlyWhileStarted() {
+        FrameScheduler testMe = new FrameScheduler();
+        Assert.assertThat(testMe.onFrameDrawn(true), is(false));
+
+        Assert.assertThat(testMe.start(), is(true));
+        Assert.assertThat("Already running", testMe.start(), is(false));
+        Assert.assertThat(testMe.onFrameDrawn(true), is(true));
+
+        testMe.stop();
+        Assert.assertThat(testMe.getState(), is(FrameScheduler.State.STOPPED));
+        Assert.assertThat(testMe.onFrameDrawn(true), is(false));
+    }
+
+    @Test
+    public void shouldIdleWhenNothingMoves() {
+        FrameScheduler testMe = new FrameScheduler();
+        testMe.start();
+
+        Assert.assertThat(testMe.onFrameDrawn(false), is(false));
+        Assert.assertThat(testMe.getState(), is(FrameScheduler.State.IDLE));
+
+        // Idle frames drawn for other reasons don't restart the loop
+        Assert.assertThat(testMe.onFrameDrawn(true), is(false));
+
+        Assert.assertThat(testMe.wake(), is(true));
+        Assert.assertThat(testMe.getState(), is(FrameScheduler.State.RUNNING));
+        Assert.assertThat("Already running", testMe.wake(), is(false));
+    }
+
+    @Test
+    public void shouldNotWakeWhenStopped() {
+        FrameScheduler testMe = new FrameScheduler();
+        Assert.assertThat(testMe.wake(), is(false));
+        Assert.assertThat(testMe.getState(), is(FrameScheduler.State.STOPPED));
+
+        // Starting from idle goes through stopped
+        testMe.start();
+        testMe.onFrameDrawn(false);
+        testMe.stop();
+        Assert.assertThat(testMe.start(), is(true));
+    }
+}
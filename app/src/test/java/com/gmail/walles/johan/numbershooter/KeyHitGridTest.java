@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyHitGridTest {
+    @Test
+    public void shouldFindClosestKey() {
+        // Two keys side by side, one below
+        KeyHitGrid testMe =
+                new KeyHitGrid(100, 100, 5, new float[] {25, 75, 50}, new float[] {25, 25, 75});
+
+        Assert.assertThat(testMe.keyAt(25, 25), is(0));
+        Assert.assertThat(testMe.keyAt(45, 10), is(0));
+        Assert.assertThat(testMe.keyAt(55, 10), is(1));
+        Assert.assertThat(testMe.keyAt(99, 40), is(1));
+        Assert.assertThat(testMe.keyAt(50, 60), is(2));
+    }
+
+    @Test
+    public void shouldHandleOutOfBoundsTouches() {
+        KeyHitGrid testMe =
+                new KeyHitGrid(100, 100, 5, new float[] {25, 75, 50}, new float[] {25, 25, 75});
+
+        Assert.assertThat(testMe.keyAt(-10, -10), is(0));
+        Assert.assertThat(testMe.keyAt(200, -10), is(1));
+        Assert.assertThat(testMe.keyAt(50, 500), is(2));
+    }
+}
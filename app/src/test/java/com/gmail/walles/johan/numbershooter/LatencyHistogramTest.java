@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void shouldComputePercentiles() {
+        LatencyHistogram testMe = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            testMe.add(i);
+        }
+
+        Assert.assertThat(testMe.getCount(), is(100));
+        Assert.assertThat(testMe.getAverageMs(), is(50L));
+        Assert.assertThat(testMe.getPercentileMs(50), is(52L));
+        Assert.assertThat(testMe.getPercentileMs(90), is(92L));
+        Assert.assertThat(testMe.getPercentileMs(99), is(100L));
+        Assert.assertThat(testMe.getMaxMs(), is(100L));
+    }
+
+    @Test
+    public void shouldHandleOutliers() {
+        LatencyHistogram testMe = new LatencyHistogram();
+        testMe.add(10);
+        testMe.add(5000);
+        testMe.add(-3);
+
+        Assert.assertThat(testMe.getCount(), is(2));
+        Assert.assertThat(testMe.getPercentileMs(50), is(12L));
+        Assert.assertThat(testMe.getPercentileMs(100), is(5000L));
+    }
+
+    @Test
+    public void shouldSummarizeNothing() {
+        Assert.assertThat(
+                new LatencyHistogram().getSummary(),
+                is("n=0, avg=0ms, p50=0ms, p90=0ms, p99=0ms, max=0ms"));
+    }
+}
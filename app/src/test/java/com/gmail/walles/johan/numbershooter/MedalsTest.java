@@ -28,9 +28,11 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.hamcrest.number.OrderingComparison;
 import org.jetbrains.annotations.NonNls;
 import org.junit.Assert;
@@ -78,18 +80,16 @@ public class MedalsTest {
     /** Validate that get() and getLatest() don't contradict each other. */
     @Test
     public void testGetVsGetLatest() throws IOException {
-        Resources resources = new TestableResources();
-
         for (GameType gameType : GameType.values()) {
             for (int level = 2; level <= 45; level++) {
                 PlayerStateV3 playerStateNow = getPlayerStateAtLevel(gameType, level);
-                Collection<Medal> after = Medals.get(resources, playerStateNow);
+                Collection<Medal> after = Medals.get(playerStateNow);
 
                 PlayerStateV3 playerStateBefore = getPlayerStateAtLevel(gameType, level - 1);
-                Collection<Medal> before = Medals.get(resources, playerStateBefore);
+                Collection<Medal> before = Medals.get(playerStateBefore);
 
                 Collection<Medal> earnedAccordingToMedalsClass =
-                        Medals.getLatest(resources, playerStateNow, gameType);
+                        Medals.getLatest(playerStateNow, gameType);
 
                 Collection<Medal> actuallyGained = new LinkedList<>(after);
                 actuallyGained.removeAll(before);
@@ -107,29 +107,91 @@ public class MedalsTest {
         // We've just done levels 1 to 4, covering 1*1 - 1*10 / 10*1
         final int LOWEST_NON_COMPLETED_LEVEL = 5;
 
-        Resources resources = new TestableResources();
-
         PlayerStateV3 playerState =
                 getPlayerStateAtLevel(GameType.MULTIPLICATION, LOWEST_NON_COMPLETED_LEVEL);
 
         Medal timesOneTableMedal =
-                new Medal(
-                        Medal.Flavor.BRONZE,
-                        R.string.way_of_counting_colon_sign_number_done + ": [2131623980, ×, 1]");
+                Medal.numberDone(GameType.MULTIPLICATION, 1, Medal.Flavor.BRONZE);
 
-        Collection<Medal> medalsEarned =
-                Medals.getLatest(resources, playerState, GameType.MULTIPLICATION);
+        Collection<Medal> medalsEarned = Medals.getLatest(playerState, GameType.MULTIPLICATION);
 
         Assert.assertThat(medalsEarned, contains(timesOneTableMedal));
     }
 
+    @Test
+    public void testDescriptions() {
+        Resources resources = new TestableResources();
+
+        Assert.assertThat(
+                Medal.numberDone(GameType.MULTIPLICATION, 1, Medal.Flavor.BRONZE)
+                        .getDescription(resources),
+                is(
+                        R.string.way_of_counting_colon_sign_number_done
+                                + ": ["
+                                + R.string.multiplication
+                                + ", ×, 1]"));
+
+        Assert.assertThat(
+                Medal.percentDone(GameType.ADDITION, 50, Medal.Flavor.BRONZE)
+                        .getDescription(resources),
+                is(
+                        R.string.operation_colon_partly_done
+                                + ": ["
+                                + R.string.addition
+                                + ", "
+                                + R.string.half_done
+                                + "]"));
+
+        Assert.assertThat(
+                Medal.waysOfCounting(4, Medal.Flavor.GOLD).getDescription(resources),
+                is(Integer.toString(R.string.started_final_way_of_counting)));
+    }
+
+    @Test
+    public void testEquality() {
+        Assert.assertThat(
+                Medal.numberDone(GameType.ADDITION, 3, Medal.Flavor.BRONZE),
+                is(Medal.numberDone(GameType.ADDITION, 3, Medal.Flavor.BRONZE)));
+        Assert.assertThat(
+                Medal.numberDone(GameType.ADDITION, 3, Medal.Flavor.BRONZE).hashCode(),
+                is(Medal.numberDone(GameType.ADDITION, 3, Medal.Flavor.BRONZE).hashCode()));
+
+        Assert.assertThat(
+                Medal.numberDone(GameType.ADDITION, 3, Medal.Flavor.BRONZE),
+                not(Medal.numberDone(GameType.SUBTRACTION, 3, Medal.Flavor.BRONZE)));
+        Assert.assertThat(
+                Medal.numberDone(GameType.ADDITION, 3, Medal.Flavor.BRONZE),
+                not(Medal.percentDone(GameType.ADDITION, 3, Medal.Flavor.BRONZE)));
+    }
+
+    @Test
+    public void testUniqueIds() throws IOException {
+        File file = folder.newFile();
+        Assert.assertThat(file.delete(), is(true));
+
+        PlayerStateV3 playerState = PlayerStateV3.fromFile(file);
+        for (GameType gameType : GameType.values()) {
+            for (int level = 1; level <= MathsFactory.getTopLevel(gameType); level++) {
+                playerState.reportSuccess(gameType);
+            }
+        }
+
+        List<Medal> allMedals = Medals.get(playerState);
+        Set<Long> ids = new HashSet<>();
+        for (Medal medal : allMedals) {
+            ids.add(medal.getId());
+        }
+
+        Assert.assertThat(ids.size(), is(allMedals.size()));
+    }
+
     private Map<Integer, List<Medal>> getMedalsPerLevel(GameType gameType) throws IOException {
         Map<Integer, List<Medal>> returnMe = new HashMap<>();
 
         for (int level = 1; level <= MathsFactory.getTopLevel(gameType); level++) {
             PlayerStateV3 playerState = getPlayerStateAtLevel(gameType, level + 1);
 
-            List<Medal> medals = Medals.getLatest(new TestableResources(), playerState, gameType);
+            List<Medal> medals = Medals.getLatest(playerState, gameType);
             if (medals.isEmpty()) {
                 continue;
             }
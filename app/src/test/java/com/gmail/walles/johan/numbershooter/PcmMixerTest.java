@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PcmMixerTest {
+    @Test
+    public void shouldMixVoices() {
+        PcmMixer testMe = new PcmMixer(2);
+        testMe.start(0, new short[] {100, 200, 300}, 1.0f);
+        testMe.start(1, new short[] {1000, 1000}, 0.5f);
+
+        short[] out = new short[2];
+        Assert.assertThat(testMe.mix(out), is(true));
+        Assert.assertThat(out, is(new short[] {600, 700}));
+
+        // Voice 1 is done, voice 0 has one sample left
+        Assert.assertThat(testMe.mix(out), is(true));
+        Assert.assertThat(out, is(new short[] {300, 0}));
+
+        Assert.assertThat(testMe.mix(out), is(false));
+        Assert.assertThat(out, is(new short[] {0, 0}));
+    }
+
+    @Test
+    public void shouldClip() {
+        PcmMixer testMe = new PcmMixer(2);
+        testMe.start(0, new short[] {30000, -30000}, 1.0f);
+        testMe.start(1, new short[] {30000, -30000}, 1.0f);
+
+        short[] out = new short[2];
+        testMe.mix(out);
+        Assert.assertThat(out, is(new short[] {Short.MAX_VALUE, Short.MIN_VALUE}));
+    }
+
+    @Test
+    public void shouldReplaceStolenVoice() {
+        PcmMixer testMe = new PcmMixer(1);
+        testMe.start(0, new short[] {1, 1, 1, 1}, 1.0f);
+
+        short[] out = new short[2];
+        testMe.mix(out);
+        testMe.start(0, new short[] {5, 5, 5}, 1.0f);
+        testMe.mix(out);
+        Assert.assertThat(out, is(new short[] {5, 5}));
+
+        // Stopping
+        testMe.start(0, null, 1.0f);
+        Assert.assertThat(testMe.mix(out), is(false));
+    }
+
+    @Test
+    public void shouldStopAll() {
+        PcmMixer testMe = new PcmMixer(2);
+        testMe.start(0, new short[] {1, 1, 1}, 1.0f);
+        testMe.start(1, new short[] {2, 2, 2}, 1.0f);
+
+        testMe.stopAll();
+        short[] out = new short[2];
+        Assert.assertThat(testMe.mix(out), is(false));
+        Assert.assertThat(out, is(new short[] {0, 0}));
+    }
+
+    @Test
+    public void shouldDownmix() {
+        Assert.assertThat(
+                PcmMixer.toMono(new short[] {100, 300, -10, 10}, 2), is(new short[] {200, 0}));
+    }
+
+    @Test
+    public void shouldResample() {
+        short[] samples = {0, 100, 200, 300};
+        Assert.assertThat(PcmMixer.resample(samples, 44100, 44100), is(samples));
+        Assert.assertThat(
+                PcmMixer.resample(samples, 1, 2),
+                is(new short[] {0, 50, 100, 150, 200, 250, 300, 300}));
+        Assert.assertThat(PcmMixer.resample(samples, 2, 1), is(new short[] {0, 200}));
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SampledBitmapsTest {
+    @Test
+    public void shouldCoverTarget() {
+        // Exact halvings
+        Assert.assertThat(SampledBitmaps.getSampleSize(2000, 4000, 500, 1000), is(4));
+
+        // Never go below the target size
+        Assert.assertThat(SampledBitmaps.getSampleSize(2000, 4000, 501, 1000), is(2));
+        Assert.assertThat(SampledBitmaps.getSampleSize(2000, 4000, 1080, 1920), is(1));
+
+        // The most demanding dimension decides
+        Assert.assertThat(SampledBitmaps.getSampleSize(2000, 4000, 100, 1000), is(4));
+    }
+
+    @Test
+    public void shouldNotUpscale() {
+        Assert.assertThat(SampledBitmaps.getSampleSize(100, 100, 500, 500), is(1));
+    }
+}
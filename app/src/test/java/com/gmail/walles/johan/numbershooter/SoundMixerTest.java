@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SoundMixerTest {
+    private static final String SHOT = "shot";
+    private static final String KILLED = "killed";
+    private static final String EXPLOSION = "explosion";
+    private static final String ARRIVING = "arriving";
+
+    private static SoundMixer.Voice play(
+            SoundMixer testMe, String effect, int priority, long nowMs, int streamId) {
+        SoundMixer.Voice voice = testMe.allocate(effect, priority, 16, 1000, nowMs);
+        if (voice != null) {
+            voice.streamId = streamId;
+        }
+        return voice;
+    }
+
+    @Test
+    public void shouldCoalesceRetriggers() {
+        SoundMixer testMe = new SoundMixer(4);
+        Assert.assertThat(play(testMe, KILLED, 2, 1000, 1), notNullValue());
+        Assert.assertThat(play(testMe, KILLED, 2, 1010, 2), nullValue());
+        Assert.assertThat(testMe.countBusy(1010), is(1));
+
+        // Other effects aren't affected
+        Assert.assertThat(play(testMe, SHOT, 1, 1010, 3), notNullValue());
+
+        // After the retrigger interval we can play again
+        Assert.assertThat(play(testMe, KILLED, 2, 1016, 4), notNullValue());
+        Assert.assertThat(testMe.countBusy(1016), is(3));
+    }
+
+    @Test
+    public void shouldStealLowestPriorityVoice() {
+        SoundMixer testMe = new SoundMixer(2);
+        play(testMe, SHOT, 1, 1000, 1);
+        play(testMe, ARRIVING, 0, 1100, 2);
+
+        SoundMixer.Voice voice = testMe.allocate(KILLED, 2, 16, 1000, 1200);
+        Assert.assertThat("Should steal the arriving voice", voice.streamId, is(2));
+    }
+
+    @Test
+    public void shouldStealOldestOnEqualPriority() {
+        SoundMixer testMe = new SoundMixer(2);
+        play(testMe, SHOT, 1, 1000, 1);
+        play(testMe, KILLED, 1, 1100, 2);
+
+        SoundMixer.Voice voice = testMe.allocate(ARRIVING, 1, 16, 1000, 1200);
+        Assert.assertThat(voice.streamId, is(1));
+    }
+
+    @Test
+    public void shouldNotStealMoreImportantVoices() {
+        SoundMixer testMe = new SoundMixer(2);
+        play(testMe, EXPLOSION, 3, 1000, 1);
+        play(testMe, KILLED, 2, 1000, 2);
+
+        Assert.assertThat(play(testMe, ARRIVING, 0, 1100, 3), nullValue());
+        Assert.assertThat(testMe.countBusy(1100), is(2));
+    }
+
+    @Test
+    public void shouldReuseFinishedVoices() {
+        SoundMixer testMe = new SoundMixer(1);
+        SoundMixer.Voice first = play(testMe, EXPLOSION, 3, 1000, 1);
+
+        // The explosion is done after 1000ms, so even a low priority sound can play then
+        SoundMixer.Voice second = testMe.allocate(ARRIVING, 0, 16, 1000, 2000);
+        Assert.assertThat(second, sameInstance(first));
+        Assert.assertThat("Nothing to stop", second.streamId, is(0));
+    }
+
+    @Test
+    public void shouldFreeFailedVoices() {
+        SoundMixer testMe = new SoundMixer(1);
+        SoundMixer.Voice voice = play(testMe, EXPLOSION, 3, 1000, 0);
+        voice.free();
+
+        Assert.assertThat(testMe.countBusy(1000), is(0));
+        Assert.assertThat(play(testMe, ARRIVING, 0, 1000, 1), notNullValue());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpscRingBufferTest {
+    @Test
+    public void shouldQueueInOrder() {
+        SpscRingBuffer<Integer> testMe = new SpscRingBuffer<>(4);
+        Assert.assertThat(testMe.poll(), nullValue());
+
+        // Go around a few times to test wrapping
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                Assert.assertThat(testMe.offer(i), is(true));
+            }
+            Assert.assertThat("Should be full", testMe.offer(4), is(false));
+
+            for (int i = 0; i < 4; i++) {
+                Assert.assertThat(testMe.poll(), is(i));
+            }
+            Assert.assertThat(testMe.poll(), nullValue());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequirePowerOfTwo() {
+        new SpscRingBuffer<Integer>(5);
+    }
+
+    @Test(timeout = 10_000)
+    public void shouldTransferBetweenThreads() throws InterruptedException {
+        final int count = 1_000_000;
+        SpscRingBuffer<Integer> testMe = new SpscRingBuffer<>(64);
+
+        Thread producer =
+                new Thread(
+                        () -> {
+                            for (int i = 0; i < count; i++) {
+                                while (!testMe.offer(i)) {
+                                    Thread.yield();
+                                }
+                            }
+                        });
+        producer.start();
+
+        for (int expected = 0; expected < count; expected++) {
+            Integer actual;
+            while ((actual = testMe.poll()) == null) {
+                Thread.yield();
+            }
+            Assert.assertThat(actual, is(expected));
+        }
+
+        producer.join();
+        Assert.assertThat(testMe.poll(), nullValue());
+    }
+}
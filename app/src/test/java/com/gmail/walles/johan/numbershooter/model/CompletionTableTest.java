@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter.model;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import com.gmail.walles.johan.numbershooter.GameType;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompletionTableTest {
+    /** Count done numbers the slow way, to compare {@link CompletionTable} against. */
+    private static int getDoneNumbersSlowly(GameType gameType, int completedLevel) {
+        int[] counts = new int[gameType.topNumber + 1];
+        for (MathsFactory.Maths maths :
+                MathsFactory.create(gameType).getMathsUpToLevelInclusive(completedLevel)) {
+            counts[maths.b]++;
+            if (gameType.isCommutative && maths.a != maths.b) {
+                counts[maths.a]++;
+            }
+        }
+
+        int doneCount = gameType.isCommutative ? 2 * gameType.topNumber - 1 : gameType.topNumber;
+        int doneNumbers = 0;
+        for (int number = 1; number <= gameType.topNumber; number++) {
+            if (counts[number] >= doneCount) {
+                doneNumbers |= 1 << number;
+            }
+        }
+
+        return doneNumbers;
+    }
+
+    @Test
+    public void shouldMatchSlowCount() {
+        for (GameType gameType : GameType.values()) {
+            CompletionTable testMe = CompletionTable.get(gameType);
+            for (int level = -1; level <= testMe.getTopLevel() + 2; level++) {
+                Assert.assertThat(
+                        gameType + " level " + level,
+                        testMe.getDoneNumbers(level),
+                        is(getDoneNumbersSlowly(gameType, level)));
+            }
+        }
+    }
+
+    @Test
+    public void testMaxDoneNumber() {
+        CompletionTable testMe = CompletionTable.get(GameType.MULTIPLICATION);
+        Assert.assertThat(testMe.getMaxDoneNumber(0), is(0));
+
+        // Levels 1 to 4 cover 1*1 - 1*10 / 10*1
+        Assert.assertThat(testMe.getMaxDoneNumber(3), is(0));
+        Assert.assertThat(testMe.getMaxDoneNumber(4), is(1));
+
+        Assert.assertThat(
+                testMe.getMaxDoneNumber(testMe.getTopLevel()),
+                is(GameType.MULTIPLICATION.topNumber));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.model;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InputQueueTest {
+    @Test
+    public void shouldQueueInOrder() {
+        InputQueue testMe = new InputQueue(4);
+        Assert.assertThat(testMe.peekTimeMs(), is(InputQueue.EMPTY));
+
+        Assert.assertThat(testMe.offer(4, 100), is(true));
+        Assert.assertThat(testMe.offer(2, 120), is(true));
+
+        Assert.assertThat(testMe.peekTimeMs(), is(100L));
+        Assert.assertThat(testMe.peekTimeMs(), is(100L));
+        Assert.assertThat(testMe.pollDigit(), is(4));
+        Assert.assertThat(testMe.peekTimeMs(), is(120L));
+        Assert.assertThat(testMe.pollDigit(), is(2));
+        Assert.assertThat(testMe.peekTimeMs(), is(InputQueue.EMPTY));
+    }
+
+    @Test
+    public void shouldDropWhenFull() {
+        InputQueue testMe = new InputQueue(2);
+        Assert.assertThat(testMe.offer(1, 10), is(true));
+        Assert.assertThat(testMe.offer(2, 20), is(true));
+        Assert.assertThat(testMe.offer(3, 30), is(false));
+
+        Assert.assertThat(testMe.pollDigit(), is(1));
+        Assert.assertThat(testMe.offer(3, 30), is(true));
+        Assert.assertThat(testMe.pollDigit(), is(2));
+        Assert.assertThat(testMe.pollDigit(), is(3));
+    }
+
+    @Test
+    public void shouldHandOverBetweenThreads() throws Exception {
+        InputQueue testMe = new InputQueue(8);
+        int count = 100_000;
+        Thread producer =
+                new Thread(
+                        () -> {
+                            for (int i = 0; i < count; i++) {
+                                while (!testMe.offer(i % 10, i)) {
+                                    Thread.yield();
+                                }
+                            }
+                        });
+        producer.start();
+
+        for (int i = 0; i < count; i++) {
+            while (testMe.peekTimeMs() == InputQueue.EMPTY) {
+                Thread.yield();
+            }
+            Assert.assertThat(testMe.peekTimeMs(), is((long) i));
+            Assert.assertThat(testMe.pollDigit(), is(i % 10));
+        }
+        producer.join();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.model;
+
+import static org.hamcrest.CoreMatchers.is;
+
+import com.gmail.walles.johan.numbershooter.GameType;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModelSnapshotTest {
+    private static final float SIZE_PIXELS = 10f;
+
+    private static FallingMathsFactory createFactory(int level) {
+        return FallingMathsFactory.createPrepared(GameType.ADDITION, level, SIZE_PIXELS, null);
+    }
+
+    private static Model createModel(FallingMathsFactory factory) {
+        return new Model(factory, SIZE_PIXELS, null, null, null, null);
+    }
+
+    @Test
+    public void shouldRestoreUpcomingChallenges() throws IOException {
+        FallingMathsFactory savedFactory = createFactory(3);
+        Model saved = createModel(savedFactory);
+        byte[] snapshot = saved.toSnapshot();
+
+        FallingMathsFactory restoredFactory = createFactory(3);
+        Model restored = createModel(restoredFactory);
+        restored.restoreSnapshot(snapshot);
+
+        Assert.assertThat(restored.toSnapshot(), is(snapshot));
+        for (int i = 0; i < Model.MATHS_PER_LEVEL; i++) {
+            FallingMaths expected = savedFactory.createChallenge(saved);
+            FallingMaths actual = restoredFactory.createChallenge(restored);
+            Assert.assertThat(actual.question, is(expected.question));
+        }
+    }
+
+    @Test
+    public void shouldRestoreRemainingChallengesOfPartlyPlayedLevel() throws IOException {
+        FallingMathsFactory savedFactory = createFactory(3);
+        Model saved = createModel(savedFactory);
+        int played = Model.MATHS_PER_LEVEL / 2;
+        for (int i = 0; i < played; i++) {
+            savedFactory.createChallenge(saved);
+        }
+        byte[] snapshot = saved.toSnapshot();
+
+        FallingMathsFactory restoredFactory = createFactory(3);
+        Model restored = createModel(restoredFactory);
+        restored.restoreSnapshot(snapshot);
+
+        for (int i = played; i < Model.MATHS_PER_LEVEL; i++) {
+            FallingMaths expected = savedFactory.createChallenge(saved);
+            FallingMaths actual = restoredFactory.createChallenge(restored);
+            Assert.assertThat(actual.question, is(expected.question));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectOtherLevels() throws IOException {
+        FallingMathsFactory savedFactory = createFactory(3);
+        byte[] snapshot = createModel(savedFactory).toSnapshot();
+
+        createModel(createFactory(4)).restoreSnapshot(snapshot);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedSnapshots() throws IOException {
+        FallingMathsFactory savedFactory = createFactory(3);
+        byte[] snapshot = createModel(savedFactory).toSnapshot();
+
+        createModel(createFactory(3)).restoreSnapshot(Arrays.copyOf(snapshot, snapshot.length - 5));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Simulates dying at various points while writing, and checks that we recover. */
+public class DurableFileTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private File base;
+    private File slotA;
+    private File slotB;
+
+    @Before
+    public void setUp() {
+        base = new File(folder.getRoot(), "state");
+        slotA = new File(base.getPath() + ".a");
+        slotB = new File(base.getPath() + ".b");
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String read() throws IOException {
+        byte[] bytes = new DurableFile(base).read();
+        if (bytes == null) {
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length);
+        }
+    }
+
+    private static void flipByte(File file, long position) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(position);
+            int original = randomAccessFile.read();
+            randomAccessFile.seek(position);
+            randomAccessFile.write(original ^ 0xff);
+        }
+    }
+
+    @Test
+    public void shouldReadNothingInitially() throws IOException {
+        Assert.assertThat(read(), nullValue());
+    }
+
+    @Test
+    public void shouldReadNewest() throws IOException {
+        DurableFile testMe = new DurableFile(base);
+        testMe.write(bytes("one"));
+        testMe.write(bytes("two"));
+        testMe.write(bytes("three"));
+
+        Assert.assertThat(read(), is("three"));
+        Assert.assertThat(slotA.exists(), is(true));
+        Assert.assertThat(slotB.exists(), is(true));
+    }
+
+    @Test
+    public void shouldSurviveTruncatedWrite() throws IOException {
+        DurableFile testMe = new DurableFile(base);
+        testMe.write(bytes("one"));
+        testMe.write(bytes("two"));
+
+        // Generation 2 went into slot A
+        for (long length = slotA.length() - 1; length >= 0; length--) {
+            truncate(slotA, length);
+            Assert.assertThat("Length " + length, read(), is("one"));
+        }
+
+        // The next write should replace the broken slot, not the good one
+        DurableFile afterCrash = new DurableFile(base);
+        afterCrash.write(bytes("three"));
+        Assert.assertThat(read(), is("three"));
+        truncate(slotA, 0);
+        Assert.assertThat(read(), is("one"));
+    }
+
+    @Test
+    public void shouldSurviveCorruptedWrite() throws IOException {
+        DurableFile testMe = new DurableFile(base);
+        testMe.write(bytes("one"));
+        testMe.write(bytes("two"));
+
+        for (long position = 0; position < slotA.length(); position++) {
+            flipByte(slotA, position);
+            Assert.assertThat("Position " + position, read(), is("one"));
+            flipByte(slotA, position);
+        }
+
+        Assert.assertThat(read(), is("two"));
+    }
+
+    @Test
+    public void shouldStartOverIfAllSlotsBroken() throws IOException {
+        DurableFile testMe = new DurableFile(base);
+        testMe.write(bytes("one"));
+        testMe.write(bytes("two"));
+        truncate(slotA, 3);
+        flipByte(slotB, 10);
+
+        Assert.assertThat(read(), nullValue());
+
+        new DurableFile(base).write(bytes("three"));
+        Assert.assertThat(read(), is("three"));
+    }
+
+    @Test
+    public void shouldMigrateLegacyFile() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(base)) {
+            out.write(bytes("legacy"));
+        }
+        Assert.assertThat(read(), is("legacy"));
+
+        DurableFile testMe = new DurableFile(base);
+        Assert.assertThat(new String(testMe.read(), StandardCharsets.UTF_8), is("legacy"));
+        testMe.write(bytes("migrated"));
+
+        Assert.assertThat(base.exists(), is(false));
+        Assert.assertThat(read(), is("migrated"));
+    }
+
+    @Test
+    public void shouldKeepLegacyFileIfFirstWriteTorn() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(base)) {
+            out.write(bytes("legacy"));
+        }
+
+        // Generation 1 goes into slot B, simulate dying in the middle of writing it
+        new DurableFile(base).write(bytes("migrated"));
+        try (FileOutputStream out = new FileOutputStream(base)) {
+            out.write(bytes("legacy"));
+        }
+        truncate(slotB, slotB.length() - 1);
+        Assert.assertThat(slotA.exists(), is(false));
+
+        Assert.assertThat(read(), is("legacy"));
+
+        DurableFile afterCrash = new DurableFile(base);
+        afterCrash.write(bytes("migrated again"));
+        Assert.assertThat(base.exists(), is(false));
+        Assert.assertThat(read(), is("migrated again"));
+    }
+
+    @Test
+    public void shouldPreferSlotsOverLegacyFile() throws IOException {
+        new DurableFile(base).write(bytes("new"));
+
+        // Simulate dying after writing the first slot but before deleting the legacy file
+        try (FileOutputStream out = new FileOutputStream(base)) {
+            out.write(bytes("legacy"));
+        }
+
+        Assert.assertThat(read(), is("new"));
+    }
+}
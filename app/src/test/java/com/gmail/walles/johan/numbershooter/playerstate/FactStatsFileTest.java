@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+import com.gmail.walles.johan.numbershooter.GameType;
+import com.gmail.walles.johan.numbershooter.model.MathsFactory;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FactStatsFileTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Fact TEN_MINUS_THREE = new Fact(GameType.SUBTRACTION, 10, 3);
+
+    @Test
+    public void shouldPersistUpdates() throws Exception {
+        File file = new File(folder.getRoot(), "stats");
+
+        FactStatsFile first = new FactStatsFile(file);
+        Assert.assertThat(first.open(), is(false));
+        first.record(TEN_MINUS_THREE, SessionHistory.Outcome.HIT, 1000);
+        first.record(TEN_MINUS_THREE, SessionHistory.Outcome.LANDED, 15000);
+        first.force();
+
+        FactStatsFile second = new FactStatsFile(file);
+        Assert.assertThat(second.open(), is(true));
+        FactStats stats = second.get(TEN_MINUS_THREE);
+        Assert.assertThat(stats.getHits(), is(1));
+        Assert.assertThat(stats.getLanded(), is(1));
+        Assert.assertThat(stats.getRecentHitLatencyMs(), is(1000L));
+    }
+
+    @Test
+    public void shouldDetectInterruptedUpdate() throws Exception {
+        File file = new File(folder.getRoot(), "stats");
+
+        FactStatsFile first = new FactStatsFile(file);
+        first.open();
+        first.record(TEN_MINUS_THREE, SessionHistory.Outcome.HIT, 1000);
+        first.force();
+
+        // Simulate dying after bumping the header sequence number but before the footer one
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(8);
+            long sequence = randomAccessFile.readLong();
+            randomAccessFile.seek(8);
+            randomAccessFile.writeLong(sequence + 1);
+        }
+
+        FactStatsFile second = new FactStatsFile(file);
+        Assert.assertThat(second.open(), is(false));
+        Assert.assertThat(second.get(TEN_MINUS_THREE), nullValue());
+    }
+
+    @Test
+    public void shouldHaveOneRecordPerFact() throws Exception {
+        FactStatsFile testMe = new FactStatsFile(new File(folder.getRoot(), "stats"));
+        testMe.open();
+
+        Set<Fact> allFacts = new HashSet<>();
+        for (GameType gameType : GameType.values()) {
+            int topLevel = MathsFactory.getTopLevel(gameType);
+            for (MathsFactory.Maths maths :
+                    MathsFactory.create(gameType).getMathsUpToLevelInclusive(topLevel)) {
+                allFacts.add(new Fact(gameType, maths.a, maths.b));
+            }
+        }
+
+        // If two facts shared a record, the second one would see the first one's hit
+        for (Fact fact : allFacts) {
+            Assert.assertThat(fact.toString(), testMe.get(fact), nullValue());
+            testMe.record(fact, SessionHistory.Outcome.HIT, 1000);
+            Assert.assertThat(fact.toString(), testMe.get(fact), notNullValue());
+        }
+
+        Assert.assertThat(testMe.get(new Fact(GameType.ADDITION, 16, 1)), nullValue());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+import com.gmail.walles.johan.numbershooter.GameType;
+import java.io.File;
+import java.util.concurrent.ExecutionException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PlayerStateRepositoryTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReturnSameInstance() throws Exception {
+        File file = folder.newFile();
+        Assert.assertThat(file.delete(), is(true));
+
+        PlayerStateRepository testMe = new PlayerStateRepository(file);
+        Assert.assertThat(testMe.get(), sameInstance(testMe.get()));
+    }
+
+    @Test
+    public void shouldWriteOnFlush() throws Exception {
+        File file = folder.newFile();
+        Assert.assertThat(file.delete(), is(true));
+
+        PlayerStateRepository testMe = new PlayerStateRepository(file);
+        PlayerStateV3 playerState = testMe.get();
+        playerState.reportSuccess(GameType.ADDITION);
+        playerState.reportSuccess(GameType.ADDITION);
+        playerState.reportSuccess(GameType.DIVISION);
+        playerState.setMedalsAwarded(GameType.ADDITION);
+
+        // Nothing should have been written yet
+        Assert.assertThat(new DurableFile(file).read(), nullValue());
+
+        flush(testMe);
+
+        PlayerStateV3 loaded = PlayerStateV3.fromFile(file);
+        Assert.assertThat(loaded.getNextLevel(GameType.ADDITION), is(3));
+        Assert.assertThat(loaded.getNextLevel(GameType.DIVISION), is(2));
+        Assert.assertThat(loaded.medalsAlreadyAwarded(GameType.ADDITION), is(true));
+        Assert.assertThat(loaded.medalsAlreadyAwarded(GameType.DIVISION), is(false));
+    }
+
+    @Test
+    public void shouldFlushWithoutChanges() throws Exception {
+        File file = folder.newFile();
+        Assert.assertThat(file.delete(), is(true));
+
+        PlayerStateRepository testMe = new PlayerStateRepository(file);
+        testMe.get();
+        flush(testMe);
+
+        Assert.assertThat(new DurableFile(file).read(), nullValue());
+    }
+
+    private static void flush(PlayerStateRepository repository)
+            throws ExecutionException, InterruptedException {
+        repository.flush().get();
+    }
+}
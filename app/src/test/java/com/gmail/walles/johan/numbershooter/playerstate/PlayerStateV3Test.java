@@ -19,8 +19,11 @@ package com.gmail.walles.johan.numbershooter.playerstate;
 import static org.hamcrest.CoreMatchers.is;
 
 import com.gmail.walles.johan.numbershooter.GameType;
+import com.gmail.walles.johan.numbershooter.PlayerState;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -53,6 +56,56 @@ public class PlayerStateV3Test {
         Assert.assertThat(testMe.medalsAlreadyAwarded(GameType.MULTIPLICATION), is(true));
     }
 
+    @Test
+    public void shouldMigrateVersionOnePlayerState() throws IOException {
+        File file = folder.newFile();
+        Assert.assertThat(file.delete(), is(true));
+
+        PlayerState old = PlayerState.fromFile(file);
+        old.increaseLevel();
+        old.increaseLevel();
+
+        PlayerStateV3 testMe = PlayerStateV3.fromFile(file);
+        Assert.assertThat(testMe.getNextLevel(GameType.MULTIPLICATION), is(3));
+        Assert.assertThat(testMe.getNextLevel(GameType.ADDITION), is(1));
+        Assert.assertThat(PlayerStateCodec.hasMagic(new DurableFile(file).read()), is(true));
+    }
+
+    @Test
+    public void shouldMigrateSerializedPlayerState() throws IOException {
+        File file = folder.newFile();
+        Assert.assertThat(file.delete(), is(true));
+
+        PlayerStateV3 old = PlayerStateV3.fromFile(file);
+        old.reportSuccess(GameType.SUBTRACTION);
+        old.reportSuccess(GameType.SUBTRACTION);
+        old.setMedalsAwarded(GameType.SUBTRACTION);
+        old.reportSuccess(GameType.SUBTRACTION);
+        old.reportFailure(GameType.SUBTRACTION);
+
+        // This is how player states used to be stored
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(old);
+        }
+        Assert.assertThat(new File(file.getPath() + ".a").delete(), is(true));
+        Assert.assertThat(new File(file.getPath() + ".b").delete(), is(true));
+        Assert.assertThat(PlayerStateCodec.hasMagic(DurableFile.readFully(file)), is(false));
+
+        PlayerStateV3 testMe = PlayerStateV3.fromFile(file);
+        Assert.assertThat(testMe.getNextLevel(GameType.SUBTRACTION), is(3));
+        Assert.assertThat(testMe.getHardestLevel(GameType.SUBTRACTION), is(4));
+        Assert.assertThat(testMe.medalsAlreadyAwarded(GameType.SUBTRACTION), is(true));
+        Assert.assertThat(testMe.getNextLevel(GameType.DIVISION), is(1));
+
+        // Migration should be done once and for all
+        Assert.assertThat(PlayerStateCodec.hasMagic(new DurableFile(file).read()), is(true));
+        Assert.assertThat(file.exists(), is(false));
+        PlayerStateV3 reloaded = PlayerStateV3.fromFile(file);
+        Assert.assertThat(reloaded.getNextLevel(GameType.SUBTRACTION), is(3));
+        Assert.assertThat(reloaded.getHardestLevel(GameType.SUBTRACTION), is(4));
+        Assert.assertThat(reloaded.medalsAlreadyAwarded(GameType.SUBTRACTION), is(true));
+    }
+
     @Test
     public void shouldPersistState() throws IOException {
         File file = folder.newFile();
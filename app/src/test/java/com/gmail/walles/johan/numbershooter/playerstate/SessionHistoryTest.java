@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018, Johan Walles <johan.walles@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gmail.walles.johan.numbershooter.playerstate;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.lessThan;
+
+import com.gmail.walles.johan.numbershooter.GameType;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SessionHistoryTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final Fact THREE_PLUS_FOUR = new Fact(GameType.ADDITION, 3, 4);
+    private static final Fact SIX_TIMES_SEVEN = new Fact(GameType.MULTIPLICATION, 6, 7);
+
+    private File logFile;
+    private File aggregatesFile;
+    private File statsFile;
+
+    private SessionHistory open(int compactAtBytes) throws IOException {
+        if (logFile == null) {
+            logFile = new File(folder.getRoot(), "log");
+            aggregatesFile = new File(folder.getRoot(), "aggregates");
+            statsFile = new File(folder.getRoot(), "stats");
+        }
+
+        return new SessionHistory(logFile, aggregatesFile, statsFile, compactAtBytes);
+    }
+
+    private static void recordSome(SessionHistory testMe) {
+        testMe.record(GameType.ADDITION, 3, 4, SessionHistory.Outcome.HIT, 1000);
+        testMe.record(GameType.ADDITION, 3, 4, SessionHistory.Outcome.HIT, 3000);
+        testMe.record(GameType.ADDITION, 3, 4, SessionHistory.Outcome.MISS, 500);
+        testMe.record(GameType.MULTIPLICATION, 6, 7, SessionHistory.Outcome.LANDED, 9000);
+    }
+
+    private static void assertRecordedSome(Map<Fact, FactStats> aggregates, int times) {
+        Assert.assertThat(aggregates.size(), is(2));
+
+        FactStats threePlusFour = aggregates.get(THREE_PLUS_FOUR);
+        Assert.assertThat(threePlusFour.getHits(), is(2 * times));
+        Assert.assertThat(threePlusFour.getMisses(), is(times));
+        Assert.assertThat(threePlusFour.getLanded(), is(0));
+        Assert.assertThat(threePlusFour.getAverageHitLatencyMs(), is(2000L));
+
+        FactStats sixTimesSeven = aggregates.get(SIX_TIMES_SEVEN);
+        Assert.assertThat(sixTimesSeven.getHits(), is(0));
+        Assert.assertThat(sixTimesSeven.getLanded(), is(times));
+        Assert.assertThat(sixTimesSeven.getAverageHitLatencyMs(), is(0L));
+    }
+
+    @Test
+    public void shouldRememberAcrossSessions() throws Exception {
+        SessionHistory first = open(1024 * 1024);
+        recordSome(first);
+        first.flush().get();
+        Assert.assertThat(logFile.length() > 0, is(true));
+
+        SessionHistory second = open(1024 * 1024);
+        recordSome(second);
+        assertRecordedSome(second.getAggregates().get(), 2);
+
+        // Getting the aggregates compacts the log
+        Assert.assertThat(logFile.length(), is(0L));
+        assertRecordedSome(open(1024 * 1024).getAggregates().get(), 2);
+    }
+
+    @Test
+    public void shouldCompactWhenLarge() throws Exception {
+        SessionHistory testMe = open(200);
+        for (int i = 0; i < 25; i++) {
+            recordSome(testMe);
+        }
+        testMe.flush().get();
+
+        Assert.assertThat(logFile.length(), lessThan(200L));
+        Assert.assertThat(new DurableFile(aggregatesFile).read(), notNullValue());
+        assertRecordedSome(open(200).getAggregates().get(), 25);
+    }
+
+    @Test
+    public void shouldIgnorePartialRecord() throws Exception {
+        SessionHistory first = open(1024 * 1024);
+        recordSome(first);
+        first.flush().get();
+
+        // Simulate dying in the middle of writing a record
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write(new byte[] {0, 40, 0, 0, 0});
+        }
+
+        SessionHistory second = open(1024 * 1024);
+        recordSome(second);
+        assertRecordedSome(second.getAggregates().get(), 2);
+    }
+
+    @Test
+    public void shouldSkipCorruptRecords() throws Exception {
+        SessionHistory first = open(1024 * 1024);
+        recordSome(first);
+        first.flush().get();
+
+        ByteBuffer corrupt = ByteBuffer.allocate(2 + 4 + 2 + 27);
+
+        // Too short to hold a sequence number
+        corrupt.putShort((short) 4);
+        corrupt.putInt(0);
+
+        // Game type name length with the high bit set
+        corrupt.putShort((short) 27);
+        corrupt.putLong(5); // Sequence number
+        corrupt.putLong(0); // Timestamp
+        corrupt.put((byte) 0x90);
+        corrupt.put(new byte[10]);
+
+        try (FileOutputStream out = new FileOutputStream(logFile, true)) {
+            out.write(corrupt.array());
+        }
+
+        SessionHistory second = open(1024 * 1024);
+        recordSome(second);
+        assertRecordedSome(second.getAggregates().get(), 2);
+        assertRecordedSome(open(1024 * 1024).getAggregates().get(), 2);
+    }
+
+    @Test
+    public void shouldNotCountTwiceAfterInterruptedCompaction() throws Exception {
+        SessionHistory first = open(1024 * 1024);
+        recordSome(first);
+        first.flush().get();
+        byte[] uncompactedLog = DurableFile.readFully(logFile);
+
+        assertRecordedSome(first.getAggregates().get(), 1);
+
+        // Simulate dying after writing the aggregates but before truncating the log
+        try (FileOutputStream out = new FileOutputStream(logFile)) {
+            out.write(uncompactedLog);
+        }
+
+        SessionHistory second = open(1024 * 1024);
+        recordSome(second);
+        assertRecordedSome(second.getAggregates().get(), 2);
+    }
+
+    @Test
+    public void shouldKeepStatsUpToDate() throws Exception {
+        SessionHistory first = open(1024 * 1024);
+        recordSome(first);
+        first.flush().get();
+
+        FactStats threePlusFour = first.getStats(THREE_PLUS_FOUR);
+        Assert.assertThat(threePlusFour.getHits(), is(2));
+        Assert.assertThat(threePlusFour.getMisses(), is(1));
+        Assert.assertThat(threePlusFour.getAverageHitLatencyMs(), is(2000L));
+        Assert.assertThat(threePlusFour.getRecentHitLatencyMs(), is(1500L));
+        Assert.assertThat(first.getStats(new Fact(GameType.ADDITION, 4, 3)), nullValue());
+
+        // Losing the stats file should make us rebuild it from the history
+        Assert.assertThat(statsFile.delete(), is(true));
+        SessionHistory second = open(1024 * 1024);
+        recordSome(second);
+        second.flush().get();
+        Assert.assertThat(second.getStats(THREE_PLUS_FOUR).getHits(), is(4));
+        Assert.assertThat(second.getStats(SIX_TIMES_SEVEN).getLanded(), is(2));
+    }
+}